@@ -0,0 +1,77 @@
+package io.slingr.endpoints.chargify.benchmarks;
+
+import io.slingr.endpoints.chargify.utils.Convert;
+import io.slingr.endpoints.chargify.webhooks.WebhookParser;
+import io.slingr.endpoints.utils.Json;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Benchmarks over the converters used by every function and webhook
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConvertBenchmark {
+
+    private Json chargifySubscription;
+    private Json chargifyCustomer;
+    private Json chargifyPaymentProfile;
+    private Json slingrCustomer;
+    private Json slingrPaymentProfile;
+
+    @Setup
+    public void setup() {
+        chargifySubscription = WebhookParser.parse(Fixtures.webhook(Fixtures.SIGNUP_SUCCESS)).json("payload").json("subscription");
+        chargifyCustomer = chargifySubscription.json("customer");
+        chargifyPaymentProfile = chargifySubscription.json("credit_card");
+        slingrCustomer = Convert.customerToSlingr(chargifyCustomer);
+        slingrPaymentProfile = Json.map()
+                .set("customerId", "9498938")
+                .set("creditCardNumber", "4111111111111111")
+                .set("expirationMonth", "02")
+                .set("expirationYear", "2040")
+                .set("cvv", "123");
+    }
+
+    @Benchmark
+    public Json customerToSlingr() {
+        return Convert.customerToSlingr(chargifyCustomer);
+    }
+
+    @Benchmark
+    public Json customerToChargify() {
+        return Convert.customerToChargify(slingrCustomer);
+    }
+
+    @Benchmark
+    public Json subscriptionToSlingr() {
+        return Convert.subscriptionToSlingr(chargifySubscription);
+    }
+
+    @Benchmark
+    public Json paymentProfileToSlingr() {
+        return Convert.paymentProfileToSlingr(chargifyPaymentProfile);
+    }
+
+    @Benchmark
+    public void checkPaymentProfileParameters(Blackhole blackhole) {
+        final Json paymentProfile = Convert.paymentProfileToChargify(slingrPaymentProfile);
+        Convert.checkPaymentProfileParameters(paymentProfile);
+        blackhole.consume(paymentProfile);
+    }
+}
@@ -0,0 +1,34 @@
+package io.slingr.endpoints.chargify.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * <p>Webhook payloads used by the benchmarks, taken from the test resources
+ */
+class Fixtures {
+
+    static final String SIGNUP_SUCCESS = "signup_success";
+    static final String SUBSCRIPTION_STATE_CHANGE = "subscription_state_change";
+    static final String CUSTOMER_UPDATE = "customer_update";
+    static final String FORM_CONTENT_TYPE = "application/x-www-form-urlencoded";
+
+    static String webhook(String name) {
+        try (InputStream is = Fixtures.class.getResourceAsStream(String.format("/webhooks/%s", name))) {
+            if (is == null) {
+                throw new IllegalStateException(String.format("Webhook fixture [%s] not found", name));
+            }
+            final ByteArrayOutputStream os = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[4096];
+            int read;
+            while ((read = is.read(buffer)) != -1) {
+                os.write(buffer, 0, read);
+            }
+            return new String(os.toByteArray(), StandardCharsets.UTF_8).trim();
+        } catch (IOException ex) {
+            throw new IllegalStateException(String.format("Webhook fixture [%s] can not be read", name), ex);
+        }
+    }
+}
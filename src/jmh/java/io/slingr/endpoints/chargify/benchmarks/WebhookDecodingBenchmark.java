@@ -0,0 +1,59 @@
+package io.slingr.endpoints.chargify.benchmarks;
+
+import io.slingr.endpoints.chargify.webhooks.WebhookParser;
+import io.slingr.endpoints.services.exchange.Parameter;
+import io.slingr.endpoints.utils.Json;
+import io.slingr.endpoints.ws.exchange.WebServiceRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Benchmarks over the decoding of the form-encoded webhooks sent by Chargify. The baseline is
+ * the path used before the webhook parser: the request built by the framework from the form body
+ * and converted to the event sent by <code>defaultWebhookProcessor</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WebhookDecodingBenchmark {
+
+    @Param({Fixtures.SIGNUP_SUCCESS, Fixtures.SUBSCRIPTION_STATE_CHANGE, Fixtures.CUSTOMER_UPDATE})
+    public String webhook;
+
+    private String body;
+    private Json message;
+
+    @Setup
+    public void setup() {
+        body = Fixtures.webhook(webhook);
+        message = Json.map()
+                .set("method", "POST")
+                .set("path", "/")
+                .set("headers", Json.map().set(Parameter.CONTENT_TYPE, Fixtures.FORM_CONTENT_TYPE))
+                .set("body", body);
+    }
+
+    @Benchmark
+    public Json defaultWebhookProcessor() {
+        return new WebServiceRequest(message).toJson();
+    }
+
+    @Benchmark
+    public Json webhookParser() {
+        return WebhookParser.parse(body);
+    }
+}
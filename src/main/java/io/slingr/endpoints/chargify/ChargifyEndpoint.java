@@ -1,25 +1,62 @@
 package io.slingr.endpoints.chargify;
 
 import io.slingr.endpoints.HttpEndpoint;
+import io.slingr.endpoints.chargify.metrics.FunctionMetrics;
+import io.slingr.endpoints.chargify.metrics.PrometheusFormat;
+import io.slingr.endpoints.chargify.metrics.WebhookMetrics;
+import io.slingr.endpoints.chargify.utils.ConnectionSettings;
 import io.slingr.endpoints.chargify.utils.Convert;
+import io.slingr.endpoints.chargify.utils.CustomerCache;
+import io.slingr.endpoints.chargify.utils.IdIndex;
+import io.slingr.endpoints.chargify.utils.IdempotencyStore;
+import io.slingr.endpoints.chargify.utils.LogPayload;
+import io.slingr.endpoints.chargify.utils.PagedReader;
+import io.slingr.endpoints.chargify.utils.ProductCatalog;
+import io.slingr.endpoints.chargify.utils.RequestScheduler;
+import io.slingr.endpoints.chargify.utils.ResponseCache;
+import io.slingr.endpoints.chargify.utils.SelfServiceUrls;
+import io.slingr.endpoints.chargify.utils.SingleFlight;
+import io.slingr.endpoints.chargify.utils.WarmUp;
+import io.slingr.endpoints.chargify.webhooks.WebhookBatcher;
+import io.slingr.endpoints.chargify.webhooks.WebhookDeduplicator;
+import io.slingr.endpoints.chargify.webhooks.WebhookDispatcher;
+import io.slingr.endpoints.chargify.webhooks.WebhookEvents;
+import io.slingr.endpoints.chargify.webhooks.WebhookParser;
+import io.slingr.endpoints.chargify.webhooks.WebhookSignature;
 import io.slingr.endpoints.exceptions.EndpointException;
 import io.slingr.endpoints.exceptions.ErrorCode;
+import io.slingr.endpoints.framework.annotations.EndpointDataStore;
 import io.slingr.endpoints.framework.annotations.EndpointFunction;
 import io.slingr.endpoints.framework.annotations.EndpointProperty;
 import io.slingr.endpoints.framework.annotations.EndpointWebService;
 import io.slingr.endpoints.framework.annotations.SlingrEndpoint;
+import io.slingr.endpoints.services.datastores.DataStore;
+import io.slingr.endpoints.services.exchange.FunctionRequest;
 import io.slingr.endpoints.services.rest.HttpRequest;
 import io.slingr.endpoints.services.rest.RestMethod;
 import io.slingr.endpoints.utils.Json;
 import io.slingr.endpoints.utils.Strings;
 import io.slingr.endpoints.ws.exchange.WebServiceRequest;
 import io.slingr.endpoints.ws.exchange.WebServiceResponse;
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * <p>Chargify endpoint
@@ -32,19 +69,63 @@ public class ChargifyEndpoint extends HttpEndpoint {
 
     private static final String FORMAT = ".json";
     private static final String UNIQUENESS_TOKEN = "uniqueness_token";
+    private static final String IDEMPOTENCY_KEY = "idempotencyKey";
+    private static final String BACKGROUND_SUFFIX = "Background";
+    private static final String BEARER_PREFIX = "Bearer ";
+    private static final String CANCELLATION_MESSAGE_PARAM = "cancellation_message";
 
     private static final String STATS = "stats";
     private static final String CUSTOMERS = "customers";
     private static final String PAYMENT_PROFILES = "payment_profiles";
     private static final String SUBSCRIPTIONS = "subscriptions";
+    private static final String PRODUCTS = "products";
 
     private static final String WRAPPER_CUSTOMER = "customer";
     private static final String WRAPPER_PAYMENT_PROFILE = "payment_profile";
     private static final String WRAPPER_SUBSCRIPTION = "subscription";
+    private static final String WRAPPER_PRODUCT = "product";
 
     private static final String CUSTOMER_LABEL = "Customer";
     private static final String PAYMENT_PROFILE_LABEL = "Payment profile";
     private static final String SUBSCRIPTION_LABEL = "Subscription";
+    private static final String CUSTOMERS_LABEL = "Customers";
+    private static final String SUBSCRIPTIONS_LABEL = "Subscriptions";
+
+    private static final String CUSTOMERS_KEY = "customers";
+    private static final String CHARGIFY_IDS_KEY = "chargifyIds";
+
+    private static final String LIST_PAGE_EVENT = "listPage";
+    private static final String SUBSCRIPTION_CANCELED_EVENT = "subscriptionCanceled";
+    private static final String WEBHOOK_EVENT = "webhook";
+    private static final String WEBHOOK_BATCH_EVENT = "webhookBatch";
+    private static final String WEBHOOK_RESPONSE = "ok";
+
+    private static final String CUSTOMER_UPDATE = "customer_update";
+
+    private static final int HTTP_UNAUTHORIZED = 401;
+    private static final int HTTP_NOT_FOUND = 404;
+    private static final int HTTP_SERVICE_UNAVAILABLE = 503;
+
+    private static final int WARM_UP_CONVERSIONS = 10000;
+
+    private static final int DEFAULT_BULK_CONCURRENCY = 4;
+    private static final int BULK_QUEUE_SIZE_PER_THREAD = 2;
+    private static final int DEFAULT_MAX_REQUESTS_PER_SECOND = 10;
+    private static final int DEFAULT_RATE_LIMIT_MAX_RETRIES = 5;
+    private static final int DEFAULT_CUSTOMER_CACHE_SIZE = 1000;
+    private static final int DEFAULT_CUSTOMER_CACHE_TTL = 60;
+    private static final int DEFAULT_RESPONSE_CACHE_SIZE = 500;
+    private static final int DEFAULT_IDEMPOTENCY_TTL = 86400;
+    private static final int IDEMPOTENCY_MEMORY_SIZE = 1000;
+    private static final int SELF_SERVICE_URLS_CACHE_SIZE = 10000;
+    private static final int DEFAULT_PRODUCT_CATALOG_REFRESH = 300;
+    private static final int DEFAULT_WEBHOOK_DEDUPLICATION_WINDOW = 3600;
+    private static final int DEFAULT_WEBHOOK_DEDUPLICATION_SIZE = 50000;
+    private static final int DEFAULT_WEBHOOK_QUEUE_SIZE = 0;
+    private static final int DEFAULT_WEBHOOK_CONSUMERS = Runtime.getRuntime().availableProcessors();
+    private static final long WEBHOOK_QUEUE_BLOCK_TIMEOUT = 10000;
+    private static final long WEBHOOK_QUEUE_STOP_TIMEOUT = 30000;
+    private static final int DEFAULT_WEBHOOK_BATCH_WAIT = 1000;
 
     @EndpointProperty
     private String apiKey;
@@ -55,6 +136,105 @@ public class ChargifyEndpoint extends HttpEndpoint {
     @EndpointProperty
     private String siteSharedKey;
 
+    @EndpointProperty
+    private String bulkConcurrency;
+
+    @EndpointProperty
+    private String httpConnectTimeout;
+
+    @EndpointProperty
+    private String httpReadTimeout;
+
+    @EndpointProperty
+    private String warmUpConnections;
+
+    @EndpointProperty
+    private String warmUp;
+
+    @EndpointProperty
+    private String metricsToken;
+
+    @EndpointProperty
+    private String maxRequestsPerSecond;
+
+    @EndpointProperty
+    private String rateLimitBurst;
+
+    @EndpointProperty
+    private String rateLimitMaxRetries;
+
+    @EndpointProperty
+    private String customerCacheSize;
+
+    @EndpointProperty
+    private String customerCacheTtl;
+
+    @EndpointProperty
+    private String responseCacheTtls;
+
+    @EndpointProperty
+    private String responseCacheSize;
+
+    @EndpointProperty
+    private String idempotencyTtl;
+
+    @EndpointProperty
+    private String productCatalogRefresh;
+
+    @EndpointProperty
+    private String validateSubscriptionReferences;
+
+    @EndpointProperty
+    private String verifyWebhookSignature;
+
+    @EndpointProperty
+    private String webhookDeduplicationWindow;
+
+    @EndpointProperty
+    private String webhookDeduplicationSize;
+
+    @EndpointProperty
+    private String webhookQueueSize;
+
+    @EndpointProperty
+    private String webhookConsumers;
+
+    @EndpointProperty
+    private String webhookBackpressure;
+
+    @EndpointProperty
+    private String typedWebhookEvents;
+
+    @EndpointProperty
+    private String webhookBatchSize;
+
+    @EndpointProperty
+    private String webhookBatchWait;
+
+    @EndpointDataStore(name = "idempotency")
+    private DataStore idempotencyDataStore;
+
+    private final FunctionMetrics functionMetrics = new FunctionMetrics();
+    private final WebhookMetrics webhookMetrics = new WebhookMetrics();
+    private final SingleFlight<Json> pendingReads = new SingleFlight<>(Json::cloneJson);
+    private final SingleFlight<Json> pendingCreations = new SingleFlight<>(Json::cloneJson);
+    private RequestScheduler scheduler;
+    private WebhookSignature webhookSignature;
+    private WebhookDeduplicator webhookDeduplicator;
+    private WebhookDispatcher webhookDispatcher;
+    private boolean typedEvents;
+    private WebhookBatcher webhookBatcher;
+    private CustomerCache customerCache;
+    private ResponseCache responseCache;
+    private IdempotencyStore idempotencyStore;
+    private SelfServiceUrls selfServiceUrls;
+    private ProductCatalog productCatalog;
+    private IdIndex customerIds;
+    private IdIndex paymentProfileIds;
+    private ExecutorService bulkExecutor;
+    private ExecutorService listExecutor;
+    private WarmUp warmUpPhases;
+
     @Override
     public String getApiUri() {
         if(StringUtils.isBlank(subdomain)){
@@ -69,9 +249,193 @@ public class ChargifyEndpoint extends HttpEndpoint {
         if(StringUtils.isBlank(apiKey)){
             throw EndpointException.permanent(ErrorCode.ARGUMENT, "Invalid empty apiKey.");
         }
+
         httpService().setupBasicAuthentication(apiKey, "x");
 
-        logger.info(String.format("Configured Chargify endpoint: apiKey [%s] - subdomain [%s] - site shared key [%s]", Strings.maskToken(apiKey), subdomain, Strings.maskToken(siteSharedKey)));
+        // timeouts of the requests sent by this endpoint, the rest of the JVM is not affected
+        final ConnectionSettings connectionSettings = ConnectionSettings.fromProperties(httpConnectTimeout, httpReadTimeout,
+                warmUpConnections, Boolean.parseBoolean(warmUp));
+        if(connectionSettings.hasConnectTimeout()){
+            httpService().setupConnectionTimeout(connectionSettings.getConnectTimeout());
+        }
+        if(connectionSettings.hasReadTimeout()){
+            httpService().setupReadTimeout(connectionSettings.getReadTimeout());
+        }
+
+        // all the requests to Chargify are sent through the scheduler
+        final int requestsPerSecond = Math.max(1, Convert.toInt(maxRequestsPerSecond, DEFAULT_MAX_REQUESTS_PER_SECOND));
+        final int burst = Math.max(1, Convert.toInt(rateLimitBurst, requestsPerSecond));
+        scheduler = new RequestScheduler(requestsPerSecond, burst, Convert.toInt(rateLimitMaxRetries, DEFAULT_RATE_LIMIT_MAX_RETRIES));
+
+        // signature of the webhooks
+        if(Boolean.parseBoolean(verifyWebhookSignature)){
+            if(StringUtils.isBlank(siteSharedKey)){
+                throw EndpointException.permanent(ErrorCode.ARGUMENT, "The site shared key is required to verify the signature of the webhooks.");
+            }
+            webhookSignature = new WebhookSignature(siteSharedKey);
+        }
+
+        // ids of the webhooks already received, only remembered by default when they are signed,
+        // otherwise fake webhooks could block the real ones
+        final int deduplicationWindow = Convert.toInt(webhookDeduplicationWindow, webhookSignature != null ? DEFAULT_WEBHOOK_DEDUPLICATION_WINDOW : 0);
+        final int deduplicationSize = Convert.toInt(webhookDeduplicationSize, DEFAULT_WEBHOOK_DEDUPLICATION_SIZE);
+        if(deduplicationWindow > 0 && deduplicationSize > 0){
+            webhookDeduplicator = new WebhookDeduplicator(deduplicationSize, deduplicationWindow, TimeUnit.SECONDS);
+        }
+
+        // webhooks converted to the SLINGR format
+        typedEvents = Boolean.parseBoolean(typedWebhookEvents);
+
+        // events of the webhooks sent to the app in batches
+        final int batchSize = Convert.toInt(webhookBatchSize, 0);
+        if(batchSize > 1){
+            webhookBatcher = new WebhookBatcher(batchSize, Math.max(1, Convert.toInt(webhookBatchWait, DEFAULT_WEBHOOK_BATCH_WAIT)),
+                    this::sendWebhookBatch, this::forgetWebhook);
+        }
+
+        // queues of webhooks processed in background, partitioned by subscription
+        final int queueSize = Convert.toInt(webhookQueueSize, DEFAULT_WEBHOOK_QUEUE_SIZE);
+        if(queueSize > 0){
+            webhookDispatcher = new WebhookDispatcher(queueSize, Math.max(1, Convert.toInt(webhookConsumers, DEFAULT_WEBHOOK_CONSUMERS)),
+                    WebhookDispatcher.Backpressure.fromString(webhookBackpressure), WEBHOOK_QUEUE_BLOCK_TIMEOUT, this::processWebhook);
+        }
+
+        // converted customers returned by the find functions
+        customerCache = new CustomerCache(Convert.toInt(customerCacheSize, DEFAULT_CUSTOMER_CACHE_SIZE), Convert.toInt(customerCacheTtl, DEFAULT_CUSTOMER_CACHE_TTL));
+
+        // responses of the generic GET requests, by path prefix
+        responseCache = new ResponseCache(responseCacheTtls, Convert.toInt(responseCacheSize, DEFAULT_RESPONSE_CACHE_SIZE));
+
+        // results of the creations, returned again when the app retries them
+        idempotencyStore = new IdempotencyStore(idempotencyDataStore, IDEMPOTENCY_MEMORY_SIZE, Convert.toInt(idempotencyTtl, DEFAULT_IDEMPOTENCY_TTL));
+
+        // URLs of the Self-Service pages
+        if(StringUtils.isNotBlank(siteSharedKey)){
+            selfServiceUrls = new SelfServiceUrls(subdomain, siteSharedKey, SELF_SERVICE_URLS_CACHE_SIZE);
+        }
+
+        // pool used to dispatch the items of the bulk functions; when its queue is full the caller
+        // waits for room, so a big list never queues all of its items at once
+        final int concurrency = Math.max(1, Convert.toInt(bulkConcurrency, DEFAULT_BULK_CONCURRENCY));
+        bulkExecutor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(concurrency * BULK_QUEUE_SIZE_PER_THREAD), this::waitForBulkQueue);
+        // pool used to walk and prefetch the pages of the list functions
+        listExecutor = Executors.newCachedThreadPool();
+
+        logger.info("Configured Chargify endpoint: apiKey [{}] - subdomain [{}] - site shared key [{}] - bulk concurrency [{}] - rate limit [{}/s, burst {}]", Strings.maskToken(apiKey), subdomain, Strings.maskToken(siteSharedKey), concurrency, requestsPerSecond, burst);
+        logger.info("Timeouts of the requests to Chargify: connect [{}ms] - read [{}ms]", connectionSettings.getConnectTimeout(), connectionSettings.getReadTimeout());
+
+        // products of the site, loaded in background
+        final int catalogRefresh = Convert.toInt(productCatalogRefresh, DEFAULT_PRODUCT_CATALOG_REFRESH);
+        if(catalogRefresh > 0){
+            productCatalog = new ProductCatalog(this::loadProducts, catalogRefresh);
+            productCatalog.start();
+        }
+
+        // ids of the existing customers and payment profiles, loaded in background
+        if(Boolean.parseBoolean(validateSubscriptionReferences)){
+            customerIds = new IdIndex();
+            paymentProfileIds = new IdIndex();
+            listExecutor.submit(() -> {
+                loadIds(CUSTOMERS, WRAPPER_CUSTOMER, customerIds);
+                loadIds(PAYMENT_PROFILES, WRAPPER_PAYMENT_PROFILE, paymentProfileIds);
+            });
+        }
+
+        // first calls do not pay for cold connections and code that was not compiled yet
+        final int connections = connectionSettings.getWarmUpConnections();
+        warmUpPhases = new WarmUp()
+                .phase("converters", this::warmUpConverters)
+                // not sent through getStats, so the warm-up does not add samples to its metrics
+                .phase("stats", () -> execute(() -> httpService().httpGet(generateRequest(RestMethod.GET, STATS))))
+                .phase("connections", () -> openConnections(connections));
+        if(Boolean.parseBoolean(warmUp)){
+            listExecutor.submit(warmUpPhases::run);
+        } else {
+            warmUpPhases.skip();
+            // connections are only opened without warm-up when they are explicitly configured
+            if(connections > 0){
+                listExecutor.submit(() -> {
+                    openConnections(connections);
+                    return null;
+                });
+            }
+        }
+    }
+
+    /**
+     * Runs every converter over synthetic resources, so they are compiled before the first calls
+     */
+    private void warmUpConverters(){
+        final Json customer = Json.map()
+                .set("id", "warm-up").set("chargifyId", 1).set("firstName", "John").set("lastName", "Doe")
+                .set("email", "john@example.com").set("organization", "Example").set("shippingCountry", "US");
+        final Json paymentProfile = Json.map()
+                .set("chargifyId", 1).set("customerId", 1).set("firstName", "John").set("lastName", "Doe")
+                .set("creditCardNumber", "4111111111111111").set("expirationMonth", 12).set("expirationYear", 2030).set("cvv", "123");
+        final Json subscription = Json.map()
+                .set("chargifyId", 1).set("customerId", 1).set("paymentProfileId", 1).set("productHandle", "basic");
+        for (int i = 0; i < WARM_UP_CONVERSIONS; i++) {
+            final Json chargifyCustomer = Convert.customerToChargify(customer);
+            Convert.checkCustomerNoEmptyParameters(chargifyCustomer);
+            Convert.customerToSlingr(chargifyCustomer.set("id", 1), "warm-up");
+
+            final Json chargifyPaymentProfile = Convert.paymentProfileToChargify(paymentProfile);
+            Convert.checkPaymentProfileNoEmptyParameters(chargifyPaymentProfile);
+            Convert.paymentProfileToSlingr(chargifyPaymentProfile.set("masked_card_number", "XXXX-XXXX-XXXX-1111"), "warm-up");
+
+            final Json chargifySubscription = Convert.subscriptionToChargify(subscription);
+            Convert.subscriptionToSlingr(chargifySubscription
+                    .set("id", 1).set("state", "active")
+                    .set("customer", chargifyCustomer)
+                    .set("credit_card", chargifyPaymentProfile)
+                    .set("product", Json.map().set("id", 1).set("handle", "basic")), "warm-up");
+        }
+    }
+
+    /**
+     * Opens the given number of connections to Chargify, sending concurrent requests to the
+     * cheapest endpoint, so they are kept alive for the first calls.
+     */
+    private void openConnections(int connections) throws InterruptedException {
+        if(connections < 1){
+            return;
+        }
+        final long start = System.nanoTime();
+        final List<Future<?>> requests = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            requests.add(listExecutor.submit(() -> execute(() -> httpService().httpGet(generateRequest(RestMethod.GET, STATS)))));
+        }
+        int opened = 0;
+        for (Future<?> request : requests) {
+            try {
+                request.get();
+                opened++;
+            } catch (ExecutionException ex) {
+                logger.warn("Error opening connection to Chargify: {}", ex.getCause() != null ? ex.getCause().getMessage() : ex.getMessage());
+            }
+        }
+        logger.info("Opened [{}] connections to Chargify in [{}] ms", opened, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    @Override
+    public void endpointStopped(String cause) {
+        if(bulkExecutor != null){
+            bulkExecutor.shutdownNow();
+        }
+        if(listExecutor != null){
+            listExecutor.shutdownNow();
+        }
+        // queued webhooks are drained before the batcher sends its last batch
+        if(webhookDispatcher != null){
+            webhookDispatcher.stop(WEBHOOK_QUEUE_STOP_TIMEOUT);
+        }
+        if(webhookBatcher != null){
+            webhookBatcher.stop();
+        }
+        if(productCatalog != null){
+            productCatalog.stop();
+        }
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////////
@@ -80,8 +444,60 @@ public class ChargifyEndpoint extends HttpEndpoint {
 
     @EndpointFunction(name = "getStats")
     public Json getStats(){
-        final HttpRequest request = generateRequest(RestMethod.GET, STATS);
-        return httpService().httpGet(request);
+        return measure("getStats", () -> {
+            final HttpRequest request = generateRequest(RestMethod.GET, STATS);
+            return execute(() -> httpService().httpGet(request));
+        });
+    }
+
+    @EndpointFunction(name = "getMetrics")
+    public Json getMetrics(){
+        return Json.map()
+                .set("functions", functionMetrics.stats())
+                .set("webhooks", webhookMetrics.stats())
+                .set("warmUp", warmUpPhases.stats())
+                .set("scheduler", scheduler.stats())
+                .set("coalescedReads", pendingReads.stats())
+                .set("coalescedCreations", pendingCreations.stats())
+                .set("customerCache", customerCache.stats())
+                .setIfNotNull("responseCache", responseCache.isEnabled() ? responseCache.stats() : null)
+                .set("idempotency", idempotencyStore.stats())
+                .setIfNotNull("productCatalog", productCatalog != null ? productCatalog.stats() : null)
+                .setIfNotNull("customerIds", customerIds != null ? customerIds.stats() : null)
+                .setIfNotNull("paymentProfileIds", paymentProfileIds != null ? paymentProfileIds.stats() : null)
+                .setIfNotNull("selfServiceUrls", selfServiceUrls != null ? selfServiceUrls.stats() : null)
+                .setIfNotNull("webhookDeduplication", webhookDeduplicator != null ? webhookDeduplicator.stats() : null)
+                .setIfNotNull("webhookQueue", webhookDispatcher != null ? webhookDispatcher.stats() : null)
+                .setIfNotNull("webhookBatches", webhookBatcher != null ? webhookBatcher.stats() : null);
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // Generic requests
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    @Override
+    @EndpointFunction(name = "_get")
+    public Json get(FunctionRequest request){
+        return measure("get", () -> {
+            final Json params = request.getJsonParams();
+            final String path = params != null ? params.string("path") : null;
+            if(StringUtils.isBlank(path)){
+                return execute(() -> super.get(request));
+            }
+            // responses are cached and shared only between calls with the same options, as settings,
+            // full response or timeouts change the response
+            final String key = Convert.toCanonicalString(params);
+            final Json cached = responseCache.get(path, key);
+            if(cached != null){
+                return cached;
+            }
+            // only the caller that sends the request stores the response
+            return coalesce(key, () -> {
+                final Json response = super.get(request);
+                responseCache.put(path, key, response);
+                return response;
+            });
+        });
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////////
@@ -90,123 +506,223 @@ public class ChargifyEndpoint extends HttpEndpoint {
 
     @EndpointFunction(name = "createCustomer")
     public Json createCustomer(Json body){
+        return measure("createCustomer", () -> {
+            final Json customer = checkCustomerToCreate(body);
+            return sendCustomerCreation(body, customer);
+        });
+    }
+
+    @EndpointFunction(name = "updateCustomer")
+    public Json updateCustomer(Json body){
+        return measure("updateCustomer", () -> {
+            final Json customer = checkCustomerToUpdate(body);
+            return sendCustomerUpdate(body, customer);
+        });
+    }
+
+    @EndpointFunction(name = "createCustomers")
+    public Json createCustomers(Json body){
+        return measure("createCustomers", () -> {
+            final List<Json> customers = checkBulkItems(CUSTOMERS_LABEL, body, CUSTOMERS_KEY);
+            logger.info("Customers to create on Chargify [{}]", customers.size());
 
+            final Json results = executeBulk(customers, WRAPPER_CUSTOMER, this::checkCustomerToCreate, this::sendCustomerCreation);
+            logger.info("Customers created [{}] - failed [{}]", results.integer("succeeded"), results.integer("failed"));
+            return results;
+        });
+    }
+
+    @EndpointFunction(name = "updateCustomers")
+    public Json updateCustomers(Json body){
+        return measure("updateCustomers", () -> {
+            final List<Json> customers = checkBulkItems(CUSTOMERS_LABEL, body, CUSTOMERS_KEY);
+            logger.info("Customers to update on Chargify [{}]", customers.size());
+
+            final Json results = executeBulk(customers, WRAPPER_CUSTOMER, this::checkCustomerToUpdate, this::sendCustomerUpdate);
+            logger.info("Customers updated [{}] - failed [{}]", results.integer("succeeded"), results.integer("failed"));
+            return results;
+        });
+    }
+
+    private Json checkCustomerToCreate(Json body){
         final Json customer = Convert.customerToChargify(body);
-        logger.info(String.format("Customer to create on Chargify [%s]", customer));
+        logger.debug("Customer to create on Chargify [{}]", LogPayload.masked(customer));
 
         Convert.checkJson(CUSTOMER_LABEL, customer);
 
         final List<String> invalidFields = Convert.checkCustomerNoEmptyParameters(customer);
         Convert.checkInvalidFields(invalidFields);
+        return customer;
+    }
 
-        final HttpRequest request = generateRequest(RestMethod.POST, CUSTOMERS);
-        request.setBody(wrapRequest(WRAPPER_CUSTOMER, customer));
+    private Json sendCustomerCreation(Json body, Json customer){
+        final long start = System.nanoTime();
+        return sendOnce(WRAPPER_CUSTOMER, body, token -> {
+            final HttpRequest request = generateRequest(RestMethod.POST, CUSTOMERS);
+            request.setBody(wrapRequest(WRAPPER_CUSTOMER, customer, token));
 
-        final Json response = httpService().httpPost(request);
-        final Json customerCreated = response.json(WRAPPER_CUSTOMER);
-        if(customerCreated == null){
-            throw EndpointException.permanent(ErrorCode.ARGUMENT, "HTTP 404 Not Found").returnCode(404);
-        }
+            final Json response = execute(() -> httpService().httpPost(request));
+            final Json customerCreated = response.json(WRAPPER_CUSTOMER);
+            if(customerCreated == null){
+                throw EndpointException.permanent(ErrorCode.ARGUMENT, "HTTP 404 Not Found").returnCode(404);
+            }
 
-        final Json converted = Convert.customerToSlingr(customerCreated, body.string("id"));
-        logger.info(String.format("Customer created [%s]", converted));
-        return converted;
+            indexResource(WRAPPER_CUSTOMER, customerCreated);
+            final Json converted = Convert.customerToSlingr(customerCreated, body.string("id"));
+            logResult("Customer created", converted, start);
+            return converted;
+        });
     }
 
-    @EndpointFunction(name = "updateCustomer")
-    public Json updateCustomer(Json body){
-
+    private Json checkCustomerToUpdate(Json body){
         final Json customer = Convert.customerToChargify(body);
-        logger.info(String.format("Customer to update on Chargify [%s]", customer));
+        logger.debug("Customer to update on Chargify [{}]", LogPayload.masked(customer));
 
         Convert.checkJson(CUSTOMER_LABEL, customer);
+        Convert.checkChargifyId(customer);
+        return customer;
+    }
+
+    private Json sendCustomerUpdate(Json body, Json customer){
+        final long start = System.nanoTime();
         final int chargifyId = Convert.checkChargifyId(customer);
+        customerCache.evict(customer.string("reference"), String.valueOf(chargifyId));
 
         final HttpRequest request = generateRequest(RestMethod.PUT, CUSTOMERS, chargifyId);
         request.setBody(wrapRequest(WRAPPER_CUSTOMER, customer));
 
-        final Json response = httpService().httpPut(request);
+        final Json response;
+        try {
+            response = execute(() -> httpService().httpPut(request));
+        } finally {
+            // customers read while the update was in flight are not stored
+            customerCache.evict(customer.string("reference"), String.valueOf(chargifyId));
+        }
         final Json customerUpdated = response.json(WRAPPER_CUSTOMER);
         if(customerUpdated == null){
             throw EndpointException.permanent(ErrorCode.ARGUMENT, "HTTP 404 Not Found").returnCode(404);
         }
 
         final Json converted = Convert.customerToSlingr(customerUpdated, body.string("id"));
-        logger.info(String.format("Customer updated [%s]", converted));
+        customerCache.put(converted);
+        logResult("Customer updated", converted, start);
         return converted;
     }
 
     @EndpointFunction(name = "findCustomerByChargifyId")
     public Json findCustomerByChargifyId(Json body){
+        return measure("findCustomerByChargifyId", () -> {
+            final long start = System.nanoTime();
 
-        final Json customer = Convert.customerToChargify(body);
-        logger.info(String.format("Find customer by chargify id on Chargify [%s]", customer));
+            final Json customer = Convert.customerToChargify(body);
+            logger.debug("Find customer by chargify id on Chargify [{}]", LogPayload.masked(customer));
 
-        Convert.checkJson(CUSTOMER_LABEL, customer);
-        final int chargifyId = Convert.checkChargifyId(customer);
+            Convert.checkJson(CUSTOMER_LABEL, customer);
+            final int chargifyId = Convert.checkChargifyId(customer);
+
+            final Json cached = customerCache.findByChargifyId(chargifyId);
+            if(cached != null){
+                logResult("Customer found on cache", cached, start);
+                return cached;
+            }
 
-        final HttpRequest request = generateRequest(RestMethod.GET, CUSTOMERS, chargifyId);
+            final long cacheVersion = customerCache.version();
+            final HttpRequest request = generateRequest(RestMethod.GET, CUSTOMERS, chargifyId);
 
-        final Json response = httpService().httpGet(request);
-        final Json customerFound =  response.json(WRAPPER_CUSTOMER);
-        if(customerFound == null){
-            throw EndpointException.permanent(ErrorCode.ARGUMENT, "HTTP 404 Not Found").returnCode(404);
-        }
+            final Json response = readCustomer(request, cacheVersion);
+            final Json customerFound =  response.json(WRAPPER_CUSTOMER);
+            if(customerFound == null){
+                throw EndpointException.permanent(ErrorCode.ARGUMENT, "HTTP 404 Not Found").returnCode(404);
+            }
 
-        final Json converted = Convert.customerToSlingr(customerFound, body.string("id"));
-        logger.info(String.format("Customer found [%s]", converted));
-        return converted;
+            indexResource(WRAPPER_CUSTOMER, customerFound);
+            final Json converted = Convert.customerToSlingr(customerFound, body.string("id"));
+            customerCache.put(converted, cacheVersion);
+            logResult("Customer found", converted, start);
+            return converted;
+        });
     }
 
     @EndpointFunction(name = "findCustomerById")
     public Json findCustomerById(Json body){
+        return measure("findCustomerById", () -> {
+            final long start = System.nanoTime();
 
-        final Json customer = Convert.customerToChargify(body);
-        logger.info(String.format("Find customer by id on Chargify [%s]", customer));
+            final Json customer = Convert.customerToChargify(body);
+            logger.debug("Find customer by id on Chargify [{}]", LogPayload.masked(customer));
 
-        Convert.checkJson(CUSTOMER_LABEL, customer);
-        final String id = Convert.checkId(customer);
+            Convert.checkJson(CUSTOMER_LABEL, customer);
+            final String id = Convert.checkId(customer);
 
-        final HttpRequest request = generateRequest(RestMethod.GET, CUSTOMERS, id);
-        final Json response = httpService().httpGet(request);
-        final Json customerFound = response.json(WRAPPER_CUSTOMER);
-        if(customerFound == null){
-            throw EndpointException.permanent(ErrorCode.ARGUMENT, "HTTP 404 Not Found").returnCode(404);
-        }
+            final Json cached = customerCache.findByReference(id);
+            if(cached != null){
+                logResult("Customer found on cache", cached, start);
+                return cached;
+            }
 
-        final Json converted = Convert.customerToSlingr(customerFound, body.string("id"));
-        logger.info(String.format("Customer found [%s]", converted));
-        return converted;
+            final long cacheVersion = customerCache.version();
+            final HttpRequest request = generateRequest(RestMethod.GET, CUSTOMERS, id);
+            final Json response = readCustomer(request, cacheVersion);
+            final Json customerFound = response.json(WRAPPER_CUSTOMER);
+            if(customerFound == null){
+                throw EndpointException.permanent(ErrorCode.ARGUMENT, "HTTP 404 Not Found").returnCode(404);
+            }
+
+            indexResource(WRAPPER_CUSTOMER, customerFound);
+            final Json converted = Convert.customerToSlingr(customerFound, body.string("id"));
+            customerCache.put(converted, cacheVersion);
+            logResult("Customer found", converted, start);
+            return converted;
+        });
     }
 
     @EndpointFunction(name = "removeCustomer")
     public Json removeCustomer(Json body){
-
-        final Json customer = Convert.customerToChargify(body);
-        logger.info(String.format("Remove customer from Chargify [%s]", customer));
-
-        Convert.checkJson(CUSTOMER_LABEL, customer);
-        final int chargifyId = Convert.checkChargifyId(customer);
-
-        final HttpRequest request = generateRequest(RestMethod.DELETE, CUSTOMERS, chargifyId);
-        try {
-            httpService().httpDelete(request);
-        } catch (EndpointException ex) {
-            if ("HTTP 404 Not Found".equalsIgnoreCase(ex.getMessage())) {
-                return Json.map().set("id", chargifyId).set("removed", false);
+        return measure("removeCustomer", () -> {
+            final long start = System.nanoTime();
+
+            final Json customer = Convert.customerToChargify(body);
+            logger.debug("Remove customer from Chargify [{}]", LogPayload.masked(customer));
+
+            Convert.checkJson(CUSTOMER_LABEL, customer);
+            final int chargifyId = Convert.checkChargifyId(customer);
+            customerCache.evict(customer.string("reference"), String.valueOf(chargifyId));
+
+            final HttpRequest request = generateRequest(RestMethod.DELETE, CUSTOMERS, chargifyId);
+            try {
+                execute(() -> httpService().httpDelete(request));
+            } catch (EndpointException ex) {
+                if ("HTTP 404 Not Found".equalsIgnoreCase(ex.getMessage())) {
+                    if(customerIds != null){
+                        customerIds.remove(chargifyId);
+                    }
+                    return Json.map().set("id", chargifyId).set("removed", false);
+                }
+                throw ex;
+            } finally {
+                // customers read while the removal was in flight are not stored
+                customerCache.evict(customer.string("reference"), String.valueOf(chargifyId));
+            }
+            if(customerIds != null){
+                customerIds.remove(chargifyId);
+            }
+            final Json customerDeleted = Json.map().set("id", chargifyId).set("removed", true);
+            if(customerDeleted == null){
+                throw EndpointException.permanent(ErrorCode.ARGUMENT, "HTTP 404 Not Found").returnCode(404);
             }
-            throw ex;
-        }
-        final Json customerDeleted = Json.map().set("id", chargifyId).set("removed", true);
-        if(customerDeleted == null){
-            throw EndpointException.permanent(ErrorCode.ARGUMENT, "HTTP 404 Not Found").returnCode(404);
-        }
 
-        final Json converted = Convert.customerToSlingr(customerDeleted, body.string("id"));
-        logger.info(String.format("Customer deleted [%s]", converted));
-        return converted;
+            final Json converted = Convert.customerToSlingr(customerDeleted, body.string("id"));
+            logResult("Customer deleted", converted, start);
+            return converted;
+        });
     }
 
+    @EndpointFunction(name = "listCustomers")
+    public Json listCustomers(FunctionRequest request){
+        return measure("listCustomers", () -> {
+            return startListing("listCustomers", request, CUSTOMERS, WRAPPER_CUSTOMER, Convert::customerToSlingr);
+        });
+    }
 
     ///////////////////////////////////////////////////////////////////////////////////////////////
     // Payment profile
@@ -214,59 +730,75 @@ public class ChargifyEndpoint extends HttpEndpoint {
 
     @EndpointFunction(name = "createPaymentProfile")
     public Json createPaymentProfile(Json body){
-
-        final Json paymentProfile = Convert.paymentProfileToChargify(body);
-        logger.info(String.format("Create payment profile on Chargify [%s]", paymentProfile));
-
-        Convert.checkJson(PAYMENT_PROFILE_LABEL, paymentProfile);
-        Convert.checkPaymentProfileParameters(paymentProfile);
-
-        final List<String> invalidFields = Convert.checkPaymentProfileNoEmptyParameters(paymentProfile);
-        Convert.checkInvalidFields(invalidFields);
-
-        final HttpRequest request = generateRequest(RestMethod.POST, PAYMENT_PROFILES);
-        request.setBody(wrapRequest(WRAPPER_PAYMENT_PROFILE, paymentProfile));
-
-        final Json response = httpService().httpPost(request);
-        if(!response.contains(WRAPPER_PAYMENT_PROFILE) && response.contains("errors")){
-            String message = "Client error";
-            final List<String> errors = response.strings("errors");
-            if(errors != null && errors.size() > 0){
-                message = errors.get(0);
-            }
-            throw EndpointException.permanent(ErrorCode.API, message, response);
-        }
-        final Json paymentProfileCreated = response.json(WRAPPER_PAYMENT_PROFILE);
-        if(paymentProfileCreated == null){
-            throw EndpointException.permanent(ErrorCode.ARGUMENT, "HTTP 404 Not Found").returnCode(404);
-        }
-
-        final Json converted = Convert.paymentProfileToSlingr(paymentProfileCreated, body.string("id"));
-        logger.info(String.format("Payment profile created [%s]", converted));
-        return converted;
+        return measure("createPaymentProfile", () -> {
+            final long start = System.nanoTime();
+
+            final Json paymentProfile = Convert.paymentProfileToChargify(body);
+            logger.debug("Create payment profile on Chargify [{}]", LogPayload.masked(paymentProfile));
+
+            Convert.checkJson(PAYMENT_PROFILE_LABEL, paymentProfile);
+            Convert.checkPaymentProfileParameters(paymentProfile);
+
+            final List<String> invalidFields = Convert.checkPaymentProfileNoEmptyParameters(paymentProfile);
+            Convert.checkInvalidFields(invalidFields);
+
+            return sendOnce(WRAPPER_PAYMENT_PROFILE, body, token -> {
+                final HttpRequest request = generateRequest(RestMethod.POST, PAYMENT_PROFILES);
+                request.setBody(wrapRequest(WRAPPER_PAYMENT_PROFILE, paymentProfile, token));
+
+                final Json response = execute(() -> httpService().httpPost(request));
+                if(!response.contains(WRAPPER_PAYMENT_PROFILE) && response.contains("errors")){
+                    String message = "Client error";
+                    final List<String> errors = response.strings("errors");
+                    if(errors != null && errors.size() > 0){
+                        message = errors.get(0);
+                    }
+                    throw EndpointException.permanent(ErrorCode.API, message, response);
+                }
+                final Json paymentProfileCreated = response.json(WRAPPER_PAYMENT_PROFILE);
+                if(paymentProfileCreated == null){
+                    throw EndpointException.permanent(ErrorCode.ARGUMENT, "HTTP 404 Not Found").returnCode(404);
+                }
+
+                indexResource(WRAPPER_PAYMENT_PROFILE, paymentProfileCreated);
+                final Json converted = Convert.paymentProfileToSlingr(paymentProfileCreated, body.string("id"));
+                logResult("Payment profile created", converted, start);
+                return converted;
+            });
+        });
     }
 
     @EndpointFunction(name = "updatePaymentProfile")
     public Json updatePaymentProfile(Json body){
+        return measure("updatePaymentProfile", () -> {
+            final long start = System.nanoTime();
 
-        final Json paymentProfile = Convert.paymentProfileToChargify(body);
-        logger.info(String.format("Payment profile to update on Chargify [%s]", paymentProfile));
+            final Json paymentProfile = Convert.paymentProfileToChargify(body);
+            logger.debug("Payment profile to update on Chargify [{}]", LogPayload.masked(paymentProfile));
 
-        Convert.checkJson(PAYMENT_PROFILE_LABEL, paymentProfile);
-        final int chargifyId = Convert.checkChargifyId(paymentProfile);
+            Convert.checkJson(PAYMENT_PROFILE_LABEL, paymentProfile);
+            final int chargifyId = Convert.checkChargifyId(paymentProfile);
 
-        final HttpRequest request = generateRequest(RestMethod.PUT, PAYMENT_PROFILES, chargifyId);
-        request.setBody(wrapRequest(WRAPPER_PAYMENT_PROFILE, paymentProfile));
+            final HttpRequest request = generateRequest(RestMethod.PUT, PAYMENT_PROFILES, chargifyId);
+            request.setBody(wrapRequest(WRAPPER_PAYMENT_PROFILE, paymentProfile));
 
-        final Json response = httpService().httpPut(request);
-        final Json paymentProfileUpdated = response.json(WRAPPER_PAYMENT_PROFILE);
-        if(paymentProfileUpdated == null){
-            throw EndpointException.permanent(ErrorCode.ARGUMENT, "HTTP 404 Not Found").returnCode(404);
-        }
+            final Json response = execute(() -> httpService().httpPut(request));
+            final Json paymentProfileUpdated = response.json(WRAPPER_PAYMENT_PROFILE);
+            if(paymentProfileUpdated == null){
+                throw EndpointException.permanent(ErrorCode.ARGUMENT, "HTTP 404 Not Found").returnCode(404);
+            }
 
-        final Json converted = Convert.paymentProfileToSlingr(paymentProfileUpdated, body.string("id"));
-        logger.info(String.format("Payment profile updated [%s]", converted));
-        return converted;
+            final Json converted = Convert.paymentProfileToSlingr(paymentProfileUpdated, body.string("id"));
+            logResult("Payment profile updated", converted, start);
+            return converted;
+        });
+    }
+
+    @EndpointFunction(name = "listPaymentProfiles")
+    public Json listPaymentProfiles(FunctionRequest request){
+        return measure("listPaymentProfiles", () -> {
+            return startListing("listPaymentProfiles", request, PAYMENT_PROFILES, WRAPPER_PAYMENT_PROFILE, Convert::paymentProfileToSlingr);
+        });
     }
 
     ///////////////////////////////////////////////////////////////////////////////////////////////
@@ -275,62 +807,196 @@ public class ChargifyEndpoint extends HttpEndpoint {
 
     @EndpointFunction(name = "createSubscription")
     public Json createSubscription(Json body){
+        return measure("createSubscription", () -> {
+            final long start = System.nanoTime();
+
+            final Json subscription = Convert.subscriptionToChargify(body);
+            logger.debug("Create subscription on Chargify [{}]", LogPayload.masked(subscription));
+
+            Convert.checkJson(SUBSCRIPTION_LABEL, subscription);
+            Convert.checkSubscriptionParameters(subscription);
+            // a product missing on the catalog could have been created after the last refresh
+            if(productCatalog != null && !productCatalog.mayExist(subscription.string("product_handle"))
+                    && readProduct(subscription.string("product_handle")) == null){
+                throw EndpointException.permanent(ErrorCode.ARGUMENT, String.format("Invalid product handle [%s]", subscription.string("product_handle")));
+            }
+            if(!mayExist(customerIds, CUSTOMERS, Convert.toInt(subscription.string("customer_id"), -1))){
+                throw EndpointException.permanent(ErrorCode.ARGUMENT, String.format("Invalid customer id [%s]", subscription.string("customer_id")));
+            }
+            if(!mayExist(paymentProfileIds, PAYMENT_PROFILES, Convert.toInt(subscription.string("payment_profile_id"), -1))){
+                throw EndpointException.permanent(ErrorCode.ARGUMENT, String.format("Invalid payment profile id [%s]", subscription.string("payment_profile_id")));
+            }
 
-        final Json subscription = Convert.subscriptionToChargify(body);
-        logger.info(String.format("Create subscription on Chargify [%s]", subscription));
-
-        Convert.checkJson(SUBSCRIPTION_LABEL, subscription);
-        Convert.checkSubscriptionParameters(subscription);
-
-        final HttpRequest request = generateRequest(RestMethod.POST, SUBSCRIPTIONS);
-        request.setBody(wrapRequest(WRAPPER_SUBSCRIPTION, subscription));
-
-        final Json response = httpService().httpPost(request);
-        final Json subscriptionCreated = response.json(WRAPPER_SUBSCRIPTION);
-        if(subscriptionCreated == null){
-            throw new IllegalStateException("HTTP 404 Not Found");
-        }
-
-        final Json converted = Convert.subscriptionToSlingr(subscriptionCreated, body.string("id"));
-        logger.info(String.format("Subscription created [%s]", converted));
-        return converted;
+            return sendOnce(WRAPPER_SUBSCRIPTION, body, token -> {
+                final HttpRequest request = generateRequest(RestMethod.POST, SUBSCRIPTIONS);
+                request.setBody(wrapRequest(WRAPPER_SUBSCRIPTION, subscription, token));
+
+                final Json response = execute(() -> httpService().httpPost(request));
+                final Json subscriptionCreated = response.json(WRAPPER_SUBSCRIPTION);
+                if(subscriptionCreated == null){
+                    throw new IllegalStateException("HTTP 404 Not Found");
+                }
+
+                final Json converted = Convert.subscriptionToSlingr(subscriptionCreated, body.string("id"));
+                logResult("Subscription created", converted, start);
+                return converted;
+            });
+        });
     }
 
     @EndpointFunction(name = "updateSubscription")
     public Json updateSubscription(Json body){
+        return measure("updateSubscription", () -> {
+            final long start = System.nanoTime();
 
-        final Json subscription = Convert.subscriptionToChargify(body);
-        logger.info(String.format("Subscription to update on Chargify [%s]", subscription));
+            final Json subscription = Convert.subscriptionToChargify(body);
+            logger.debug("Subscription to update on Chargify [{}]", LogPayload.masked(subscription));
 
-        Convert.checkJson(SUBSCRIPTION_LABEL, subscription);
-        final int chargifyId = Convert.checkChargifyId(subscription);
+            Convert.checkJson(SUBSCRIPTION_LABEL, subscription);
+            final int chargifyId = Convert.checkChargifyId(subscription);
 
-        final HttpRequest request = generateRequest(RestMethod.PUT, SUBSCRIPTIONS, chargifyId);
-        request.setBody(wrapRequest(WRAPPER_SUBSCRIPTION, subscription));
+            final HttpRequest request = generateRequest(RestMethod.PUT, SUBSCRIPTIONS, chargifyId);
+            request.setBody(wrapRequest(WRAPPER_SUBSCRIPTION, subscription));
 
-        final Json response = httpService().httpPut(request);
-        final Json subscriptionUpdated = response.json(WRAPPER_SUBSCRIPTION);
-        if(subscriptionUpdated == null){
-            throw new IllegalStateException("HTTP 404 Not Found");
-        }
+            final Json response = execute(() -> httpService().httpPut(request));
+            final Json subscriptionUpdated = response.json(WRAPPER_SUBSCRIPTION);
+            if(subscriptionUpdated == null){
+                throw new IllegalStateException("HTTP 404 Not Found");
+            }
 
-        final Json converted = Convert.subscriptionToSlingr(subscriptionUpdated, body.string("id"));
-        logger.info(String.format("Subscription updated [%s]", converted));
-        return converted;
+            final Json converted = Convert.subscriptionToSlingr(subscriptionUpdated, body.string("id"));
+            logResult("Subscription updated", converted, start);
+            return converted;
+        });
     }
 
     @EndpointFunction(name = "cancelSubscription")
     public Json cancelSubscription(Json body){
+        return measure("cancelSubscription", () -> {
+            final long start = System.nanoTime();
 
-        final Json subscription = Convert.subscriptionToChargify(body);
-        logger.info(String.format("Subscription to cancel on Chargify [%s]", subscription));
+            final Json subscription = Convert.subscriptionToChargify(body);
+            logger.debug("Subscription to cancel on Chargify [{}]", LogPayload.masked(subscription));
 
-        Convert.checkJson(SUBSCRIPTION_LABEL, subscription);
-        final int chargifyId = Convert.checkChargifyId(subscription);
+            Convert.checkJson(SUBSCRIPTION_LABEL, subscription);
+            final int chargifyId = Convert.checkChargifyId(subscription);
 
-        final HttpRequest request = generateRequest(RestMethod.DELETE, SUBSCRIPTIONS, chargifyId);
+            return sendSubscriptionCancellation(chargifyId, null, body.string("id"), start);
+        });
+    }
+
+    @EndpointFunction(name = "cancelSubscriptions")
+    public Json cancelSubscriptions(FunctionRequest request){
+        return measure("cancelSubscriptions", () -> {
+            final Json params = request.getJsonParams() != null ? request.getJsonParams() : Json.map();
+            final List<Object> ids = toList(params.object(CHARGIFY_IDS_KEY));
+            if(ids == null || ids.isEmpty()){
+                throw EndpointException.permanent(ErrorCode.ARGUMENT, String.format("%s list is empty", SUBSCRIPTIONS_LABEL));
+            }
+            final String cancellationMessage = params.string("cancellationMessage");
+            logger.info("Subscriptions to cancel on Chargify [{}]", ids.size());
+
+            // ids are validated before canceling any subscription
+            final int[] chargifyIds = new int[ids.size()];
+            int invalid = 0;
+            for (int i = 0; i < ids.size(); i++) {
+                try {
+                    chargifyIds[i] = Convert.checkChargifyId(Json.map().set("id", ids.get(i) != null ? String.valueOf(ids.get(i)) : null));
+                } catch (EndpointException ex) {
+                    chargifyIds[i] = -1;
+                    invalid++;
+                }
+            }
+            startCancellations(request.getFunctionId(), ids, chargifyIds, cancellationMessage);
+            return Json.map().set("total", ids.size()).set("invalid", invalid);
+        });
+    }
+
+    /**
+     * Cancels the subscriptions through the bulk pool. The result of each subscription is sent to
+     * the app as a 'subscriptionCanceled' event (callback of the function call) as soon as it is
+     * known, and a last event with the totals is sent when all of them finished. When the endpoint
+     * stops before that, the last event is sent anyway as an error with the items still pending.
+     */
+    private void startCancellations(String functionId, List<Object> ids, int[] chargifyIds, String cancellationMessage){
+        // cancellations are sent after the function returned, so they are measured on their own
+        final FunctionMetrics.Call background = functionMetrics.detached("cancelSubscriptions" + BACKGROUND_SUFFIX);
+        listExecutor.submit(() -> {
+            final long start = System.nanoTime();
+            final List<Future<Boolean>> futures = new ArrayList<>(chargifyIds.length);
+            int succeeded = 0;
+            int processed = 0;
+            String interruption = null;
+            try {
+                for (int i = 0; i < chargifyIds.length; i++) {
+                    final int index = i;
+                    final int chargifyId = chargifyIds[i];
+                    if(chargifyId < 0){
+                        events().send(SUBSCRIPTION_CANCELED_EVENT, bulkError(index, new IllegalArgumentException(String.format("Invalid chargify id [%s]", ids.get(index)))), functionId);
+                        futures.add(null);
+                        continue;
+                    }
+                    futures.add(bulkExecutor.submit(() -> {
+                        Json result;
+                        try {
+                            final Json canceled = functionMetrics.within(background,
+                                    () -> sendSubscriptionCancellation(chargifyId, cancellationMessage, null, System.nanoTime()));
+                            result = Json.map().set("index", index).set("success", true).set(WRAPPER_SUBSCRIPTION, canceled);
+                        } catch (Exception ex) {
+                            background.failed(ex);
+                            result = bulkError(index, ex).set("chargifyId", chargifyId);
+                        }
+                        events().send(SUBSCRIPTION_CANCELED_EVENT, result, functionId);
+                        return result.bool("success", false);
+                    }));
+                }
+
+                for (Future<Boolean> future : futures) {
+                    if(future != null){
+                        try {
+                            if(future.get()){
+                                succeeded++;
+                            }
+                        } catch (ExecutionException ex) {
+                            logger.warn("Error canceling subscription: {}", ex.getMessage());
+                        }
+                    }
+                    processed++;
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                interruption = "Cancellation of the subscriptions was interrupted";
+            } catch (RejectedExecutionException ex) {
+                interruption = "Cancellation of the subscriptions was stopped because the endpoint is stopping";
+            }
+            background.finish();
+
+            // the app always gets the last event, also when the work was cut short
+            final Json last = Json.map()
+                    .set("last", true)
+                    .set("succeeded", succeeded)
+                    .set("failed", processed - succeeded);
+            if(interruption != null){
+                logger.warn("{}: canceled [{}] - failed [{}] - pending [{}]", interruption, succeeded, processed - succeeded, chargifyIds.length - processed);
+                last.set("success", false)
+                        .set("message", interruption)
+                        .set("pending", chargifyIds.length - processed);
+            } else {
+                logger.info("Subscriptions canceled [{}] - failed [{}] - [{}] ms", succeeded, processed - succeeded,
+                        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            }
+            events().send(SUBSCRIPTION_CANCELED_EVENT, last, functionId);
+        });
+    }
+
+    /**
+     * Cancels the subscription. A subscription that does not exist is not canceled, but it is not
+     * an error.
+     */
+    private Json sendSubscriptionCancellation(int chargifyId, String cancellationMessage, String slingrId, long start){
+        final HttpRequest request = subscriptionCancellationRequest(chargifyId, cancellationMessage);
         try {
-            httpService().httpDelete(request);
+            execute(() -> httpService().httpDelete(request));
         } catch (EndpointException ee) {
             if ("HTTP 404 Not Found".equalsIgnoreCase(ee.getMessage())) {
                 return Json.map().set("id", chargifyId).set("canceled", false);
@@ -338,15 +1004,110 @@ public class ChargifyEndpoint extends HttpEndpoint {
             throw ee;
         }
         final Json canceledSubscription = Json.map().set("id", chargifyId).set("canceled", true);
-        if(canceledSubscription == null){
-            throw new IllegalStateException("HTTP 404 Not Found");
-        }
 
-        final Json converted = Convert.subscriptionToSlingr(canceledSubscription, body.string("id"));
-        logger.info(String.format("Canceled subscription [%s]", converted));
+        final Json converted = Convert.subscriptionToSlingr(canceledSubscription, slingrId);
+        logResult("Canceled subscription", converted, start);
         return converted;
     }
 
+    /**
+     * Request to cancel the subscription. The message is sent as a query parameter, because the
+     * body of a DELETE request may be dropped on its way to Chargify.
+     */
+    static HttpRequest subscriptionCancellationRequest(int chargifyId, String cancellationMessage){
+        final HttpRequest request = generateRequest(RestMethod.DELETE, SUBSCRIPTIONS, chargifyId);
+        if(StringUtils.isNotBlank(cancellationMessage)){
+            request.getParams().set(CANCELLATION_MESSAGE_PARAM, cancellationMessage);
+        }
+        return request;
+    }
+
+    @EndpointFunction(name = "listSubscriptions")
+    public Json listSubscriptions(FunctionRequest request){
+        return measure("listSubscriptions", () -> {
+            return startListing("listSubscriptions", request, SUBSCRIPTIONS, WRAPPER_SUBSCRIPTION, Convert::subscriptionToSlingr);
+        });
+    }
+
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+    // Products
+    ///////////////////////////////////////////////////////////////////////////////////////////////
+
+    @EndpointFunction(name = "listProducts")
+    public Json listProducts(Json body){
+        return measure("listProducts", () -> {
+            final String familyHandle = body != null ? body.string("familyHandle") : null;
+            List<Json> products = productCatalog != null ? productCatalog.list(familyHandle) : null;
+            if(products == null){
+                // catalog is disabled or not loaded yet
+                products = new ArrayList<>();
+                for (Json chargifyProduct : loadProducts()) {
+                    final Json product = Convert.productToSlingr(chargifyProduct);
+                    final Json family = product.json("family");
+                    if(StringUtils.isBlank(familyHandle) || (family != null && familyHandle.equals(family.string("handle")))){
+                        products.add(product);
+                    }
+                }
+            }
+            final Json list = Json.list();
+            for (Json product : products) {
+                list.push(product);
+            }
+            return Json.map().set("products", list);
+        });
+    }
+
+    @EndpointFunction(name = "findProductByHandle")
+    public Json findProductByHandle(Json body){
+        return measure("findProductByHandle", () -> {
+            final String handle = body != null ? body.string("handle") : null;
+            if(StringUtils.isBlank(handle)){
+                throw EndpointException.permanent(ErrorCode.ARGUMENT, String.format("Invalid product handle [%s]", handle));
+            }
+            final Json product = productCatalog != null ? productCatalog.findByHandle(handle) : null;
+            if(product != null){
+                return product;
+            }
+
+            // products missing on the catalog are read from Chargify, they could be new
+            final Json productFound = readProduct(handle);
+            if(productFound == null){
+                throw EndpointException.permanent(ErrorCode.ARGUMENT, "HTTP 404 Not Found").returnCode(404);
+            }
+            return Convert.productToSlingr(productFound);
+        });
+    }
+
+    /**
+     * Reads the product with the given handle from Chargify, in the Chargify format. Returns null
+     * when the product does not exist.
+     */
+    private Json readProduct(String handle){
+        if(StringUtils.isBlank(handle)){
+            return null;
+        }
+        final HttpRequest request = new HttpRequest(RestMethod.GET, String.format("%s/handle/%s%s", PRODUCTS, Convert.toPathSegment(handle), FORMAT));
+        try {
+            final Json response = execute(() -> httpService().httpGet(request));
+            return response != null ? response.json(WRAPPER_PRODUCT) : null;
+        } catch (EndpointException ex) {
+            if ("HTTP 404 Not Found".equalsIgnoreCase(ex.getMessage())) {
+                return null;
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Reads all the products of the site, in the Chargify format
+     */
+    private List<Json> loadProducts(){
+        final List<Json> products = new ArrayList<>();
+        final PagedReader reader = new PagedReader(listExecutor, PagedReader.MAX_PER_PAGE,
+                pageFetcher(PRODUCTS, WRAPPER_PRODUCT, functionMetrics.current()));
+        reader.read(1, (page, items, last) -> products.addAll(items));
+        return products;
+    }
 
     ///////////////////////////////////////////////////////////////////////////////////////////////
     // Self service url
@@ -354,16 +1115,42 @@ public class ChargifyEndpoint extends HttpEndpoint {
 
     @EndpointFunction(name = "calculateSelfServiceUrl")
     public Json calculateSelfServiceUrl(Json body){
-        if(StringUtils.isBlank(siteSharedKey)){
-            throw new IllegalStateException("Empty site shared key");
-        }
-        if(body == null || StringUtils.isBlank(body.string("chargifyId"))){
-            throw new IllegalStateException("Empty chargify ID");
-        }
-        final String chargifyId = body.string("chargifyId");
-        final String token = DigestUtils.sha1Hex(String.format("update_payment--%s--%s", chargifyId, siteSharedKey)).substring(0, 10);
+        return measure("calculateSelfServiceUrl", () -> {
+            if(StringUtils.isBlank(siteSharedKey)){
+                throw new IllegalStateException("Empty site shared key");
+            }
+            if(body == null || StringUtils.isBlank(body.string("chargifyId"))){
+                throw new IllegalStateException("Empty chargify ID");
+            }
+            final String pageType = SelfServiceUrls.checkPageType(body.string("pageType"));
+            return Json.map().set("body", selfServiceUrls.url(pageType, body.string("chargifyId")));
+        });
+    }
 
-        return Json.map().set("body", String.format("https://%s.chargify.com/update_payment/%s/%s", subdomain, chargifyId, token));
+    @EndpointFunction(name = "calculateSelfServiceUrls")
+    public Json calculateSelfServiceUrls(Json body){
+        return measure("calculateSelfServiceUrls", () -> {
+            if(StringUtils.isBlank(siteSharedKey)){
+                throw new IllegalStateException("Empty site shared key");
+            }
+            final List<Object> ids = body != null ? toList(body.object(CHARGIFY_IDS_KEY)) : null;
+            if(ids == null || ids.isEmpty()){
+                throw EndpointException.permanent(ErrorCode.ARGUMENT, "Chargify ids list is empty");
+            }
+            final String pageType = SelfServiceUrls.checkPageType(body.string("pageType"));
+
+            final Json urls = Json.list();
+            for (Object id : ids) {
+                final String chargifyId = id != null ? String.valueOf(id) : null;
+                if(StringUtils.isBlank(chargifyId)){
+                    urls.push(Json.map().set("chargifyId", chargifyId).set("message", "Empty chargify ID"));
+                } else {
+                    urls.push(Json.map().set("chargifyId", chargifyId).set("url", selfServiceUrls.url(pageType, chargifyId)));
+                }
+            }
+            logger.info("Self-Service URLs calculated [{}] - page type [{}]", ids.size(), pageType);
+            return Json.map().set("pageType", pageType).set("urls", urls);
+        });
     }
 
 
@@ -373,9 +1160,132 @@ public class ChargifyEndpoint extends HttpEndpoint {
 
     @EndpointWebService(methods = RestMethod.POST)
     protected WebServiceResponse webhooks(WebServiceRequest request) {
-        return defaultWebhookProcessor(request);
+        final String body = request.getRawBody();
+        if(webhookSignature != null && !webhookSignature.verify(body, header(request, WebhookSignature.HEADER))){
+            // rejected before any parsing
+            logger.warn("Webhook rejected: invalid signature");
+            return webServiceResponse(HTTP_UNAUTHORIZED, "invalid signature");
+        }
+        if(StringUtils.isBlank(body) || body.trim().startsWith("{")){
+            // not a form-encoded webhook sent by Chargify
+            return defaultWebhookProcessor(request);
+        }
+        final WebhookMetrics.Event eventMetrics = webhookMetrics.event(WebhookParser.value(body, "event"));
+        eventMetrics.received(body.length());
+
+        final long webhookId = Convert.toLong(WebhookParser.value(body, "id"), -1);
+        if(webhookDeduplicator != null && webhookDeduplicator.isDuplicate(webhookId)){
+            // delivery retried by Chargify, it was already processed
+            eventMetrics.duplicated();
+            logger.info("Duplicated webhook [{}] discarded", webhookId);
+            return new WebServiceResponse(WEBHOOK_RESPONSE);
+        }
+        if(webhookDispatcher == null){
+            try {
+                processWebhook(body);
+            } catch (RuntimeException ex) {
+                // Chargify will retry it, so it must not be discarded as duplicated
+                forgetWebhook(webhookId);
+                throw ex;
+            }
+        } else if(!webhookDispatcher.submit(webhookPartitionKey(body), body)){
+            // Chargify will retry it later
+            forgetWebhook(webhookId);
+            eventMetrics.rejected();
+            logger.warn("Webhook [{}] rejected: the queue is full", webhookId);
+            return webServiceResponse(HTTP_SERVICE_UNAVAILABLE, "queue is full");
+        }
+        return new WebServiceResponse(WEBHOOK_RESPONSE);
+    }
+
+    /**
+     * Removes the webhook from the received ones, so a new delivery of it is processed again
+     */
+    private void forgetWebhook(long webhookId){
+        if(webhookDeduplicator != null){
+            webhookDeduplicator.forget(webhookId);
+        }
+    }
+
+    /**
+     * Webhooks of the same subscription, or of the same customer when there is no subscription,
+     * are processed in order
+     */
+    private String webhookPartitionKey(String body){
+        final String subscriptionId = WebhookParser.value(body, "payload[subscription][id]");
+        if(StringUtils.isNotBlank(subscriptionId)){
+            return "subscription:" + subscriptionId;
+        }
+        final String customerId = WebhookParser.value(body, "payload[customer][id]");
+        return StringUtils.isNotBlank(customerId) ? "customer:" + customerId : null;
+    }
+
+    private void processWebhook(String body){
+        final long start = System.nanoTime();
+        final Json webhook = WebhookParser.parse(body);
+        final long parsed = System.nanoTime();
+        final WebhookMetrics.Event eventMetrics = webhookMetrics.event(webhook.string("event"));
+        eventMetrics.parsed(parsed - start);
+
+        logger.debug("Webhook received [{}]", LogPayload.masked(webhook));
+        final Json payload = webhook.json("payload");
+        if(payload != null){
+            indexResource(WRAPPER_CUSTOMER, payload.json(WRAPPER_CUSTOMER));
+            indexResource(WRAPPER_PAYMENT_PROFILE, payload.json(WRAPPER_PAYMENT_PROFILE));
+            indexResource(WRAPPER_SUBSCRIPTION, payload.json(WRAPPER_SUBSCRIPTION));
+        }
+        if(CUSTOMER_UPDATE.equals(webhook.string("event"))){
+            final Json customer = webhook.json("payload") != null ? webhook.json("payload").json(WRAPPER_CUSTOMER) : null;
+            if(customer != null) {
+                customerCache.evict(customer.string("reference"), customer.string("id"));
+            }
+        }
+        final String typedEvent = typedEvents ? WebhookEvents.eventName(webhook.string("event")) : null;
+        final String eventName = typedEvent != null ? typedEvent : WEBHOOK_EVENT;
+        final Json eventData = typedEvent != null ? WebhookEvents.toSlingr(webhook) : webhook;
+        if(webhookBatcher != null){
+            webhookBatcher.add(Convert.toLong(webhook.string("id"), -1), eventName, eventData);
+        } else {
+            events().send(eventName, eventData);
+        }
+        eventMetrics.dispatched(System.nanoTime() - parsed);
+    }
+
+    private void sendWebhookBatch(List<Json> batch){
+        final Json list = Json.list();
+        for (Json event : batch) {
+            list.push(event);
+        }
+        events().send(WEBHOOK_BATCH_EVENT, Json.map().set("size", batch.size()).set("events", list));
     }
 
+    @EndpointWebService(methods = RestMethod.GET, path = "ready")
+    public WebServiceResponse readiness(WebServiceRequest request){
+        if(warmUpPhases == null || !warmUpPhases.isReady()){
+            return webServiceResponse(HTTP_SERVICE_UNAVAILABLE, "warming up");
+        }
+        return new WebServiceResponse("ready");
+    }
+
+    @EndpointWebService(methods = RestMethod.GET, path = "metrics")
+    public WebServiceResponse metrics(WebServiceRequest request){
+        // the web services of the endpoint are public, so the metrics require their own token
+        if(StringUtils.isBlank(metricsToken)){
+            return webServiceResponse(HTTP_NOT_FOUND, "metrics are disabled");
+        }
+        final String authorization = header(request, "Authorization");
+        final String token = authorization != null && authorization.startsWith(BEARER_PREFIX) ? authorization.substring(BEARER_PREFIX.length()) : "";
+        if(!MessageDigest.isEqual(metricsToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8))){
+            return webServiceResponse(HTTP_UNAUTHORIZED, "invalid token");
+        }
+        final PrometheusFormat format = new PrometheusFormat();
+        functionMetrics.write(format);
+        webhookMetrics.write(format);
+        if(webhookDispatcher != null){
+            format.gauge("chargify_webhooks_queue_depth", "Webhooks waiting in the queues to be sent to the app", webhookDispatcher.queueDepth());
+        }
+        return new WebServiceResponse(format.toString(), PrometheusFormat.CONTENT_TYPE);
+    }
 
     @EndpointWebService(methods = {RestMethod.GET, RestMethod.HEAD})
     public void exposeWebhookUri(WebServiceRequest request){
@@ -386,6 +1296,318 @@ public class ChargifyEndpoint extends HttpEndpoint {
     // Helpers
     ///////////////////////////////////////////////////////////////////////////////////////////////
 
+    /**
+     * Sends the request through the scheduler. The time waiting for the response is recorded apart
+     * from the time the scheduler held the request (rate limit and retries of throttled requests).
+     */
+    private Json execute(Supplier<Json> call){
+        final long start = System.nanoTime();
+        final long[] httpNanos = {0};
+        try {
+            return scheduler.execute(() -> {
+                final long sent = System.nanoTime();
+                try {
+                    return call.get();
+                } finally {
+                    httpNanos[0] += System.nanoTime() - sent;
+                }
+            });
+        } finally {
+            functionMetrics.recordRequest(httpNanos[0], System.nanoTime() - start - httpNanos[0]);
+        }
+    }
+
+    /**
+     * Sends the GET request unless an identical one is already in flight, in which case its
+     * response is shared and the time waiting for it is recorded as wait
+     */
+    private Json coalesce(String key, Supplier<Json> call){
+        final long start = System.nanoTime();
+        final boolean[] executed = {false};
+        try {
+            return pendingReads.execute(key, () -> {
+                executed[0] = true;
+                return execute(call);
+            });
+        } finally {
+            if(!executed[0]){
+                functionMetrics.recordWait(System.nanoTime() - start);
+            }
+        }
+    }
+
+    /**
+     * Fetcher of the pages of the given resource, in the Chargify format. Pages are read on the
+     * list pool and their requests are added to the given call, which can be null.
+     */
+    private PagedReader.PageFetcher pageFetcher(String type, String wrapper, FunctionMetrics.Call call){
+        return (page, perPage) -> functionMetrics.within(call, () -> {
+            final HttpRequest request = generateRequest(RestMethod.GET, type);
+            request.getParams().set("page", page).set("per_page", perPage);
+            return Convert.unwrapList(execute(() -> httpService().httpGet(request)), wrapper);
+        });
+    }
+
+    /**
+     * Sends the GET request of a customer, sharing the response with the identical requests already
+     * in flight. Requests are only shared while the version of the customer cache does not change,
+     * so a read started before an update is never returned to a request started after it.
+     */
+    private Json readCustomer(HttpRequest request, long cacheVersion){
+        final String key = readKey(request.getPath(), request.getParams(), request.getHeaders()) + "@" + cacheVersion;
+        return coalesce(key, () -> httpService().httpGet(request));
+    }
+
+    private String readKey(String path, Json params, Json headers){
+        if(StringUtils.isBlank(path)){
+            return null;
+        }
+        final StringBuilder key = new StringBuilder(path);
+        if(params != null && !params.isEmpty()){
+            key.append('?').append(params.toString());
+        }
+        if(headers != null && !headers.isEmpty()){
+            key.append('#').append(headers.toString());
+        }
+        return key.toString();
+    }
+
+    /**
+     * Executes the function recording its latencies and errors
+     */
+    private Json measure(String function, Supplier<Json> call){
+        final FunctionMetrics.Call measured = functionMetrics.start(function);
+        try {
+            return call.get();
+        } catch (RuntimeException ex) {
+            measured.failed(ex);
+            throw ex;
+        } finally {
+            measured.finish();
+        }
+    }
+
+    private List<Json> checkBulkItems(String label, Json body, String key){
+        final List<Json> items = body != null ? body.jsons(key) : null;
+        if(items == null || items.isEmpty()){
+            throw EndpointException.permanent(ErrorCode.ARGUMENT, String.format("%s list is empty", label));
+        }
+        return items;
+    }
+
+    /**
+     * Converts and validates every item before sending it to Chargify. Valid items are sent
+     * through the bulk pool and the results are returned in the same order of the given items.
+     */
+    private Json executeBulk(List<Json> items, String resultKey, Function<Json, Json> checker, BiFunction<Json, Json, Json> sender){
+        final int size = items.size();
+        final Json[] results = new Json[size];
+        final List<Future<Json>> futures = new ArrayList<>(size);
+        final FunctionMetrics.Call call = functionMetrics.current();
+
+        for (int i = 0; i < size; i++) {
+            final Json item = items.get(i);
+            Future<Json> future = null;
+            try {
+                final Json converted = checker.apply(item);
+                future = bulkExecutor.submit(() -> functionMetrics.within(call, () -> sender.apply(item, converted)));
+            } catch (RuntimeException ex) {
+                // an invalid item never fails the whole list
+                results[i] = bulkError(i, ex);
+            }
+            futures.add(future);
+        }
+
+        int succeeded = 0;
+        final Json list = Json.list();
+        for (int i = 0; i < size; i++) {
+            final Future<Json> future = futures.get(i);
+            if(future != null) {
+                try {
+                    results[i] = Json.map().set("index", i).set("success", true).set(resultKey, future.get());
+                    succeeded++;
+                } catch (ExecutionException ex) {
+                    results[i] = bulkError(i, ex.getCause());
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    results[i] = bulkError(i, ex);
+                }
+            }
+            list.push(results[i]);
+        }
+        return Json.map()
+                .set("succeeded", succeeded)
+                .set("failed", size - succeeded)
+                .set("results", list);
+    }
+
+    private void waitForBulkQueue(Runnable task, ThreadPoolExecutor executor){
+        if(executor.isShutdown()){
+            throw new RejectedExecutionException("The bulk pool was stopped");
+        }
+        try {
+            executor.getQueue().put(task);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for the bulk pool", ex);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Object> toList(Object value){
+        if(value instanceof Json && ((Json) value).isList()){
+            return ((Json) value).toList();
+        }
+        if(value instanceof List){
+            return (List<Object>) value;
+        }
+        return null;
+    }
+
+    private Json bulkError(int index, Throwable throwable){
+        logger.info("Bulk item [{}] failed: {}", index, throwable.getMessage());
+        return Json.map().set("index", index).set("success", false).set("message", throwable.getMessage());
+    }
+
+    /**
+     * Starts walking the pages of the given resource in background. Each page is converted and
+     * sent to the app as a 'listPage' event (callback of the function call) as soon as it is
+     * read, so the whole list is never kept in memory.
+     */
+    private Json startListing(String function, FunctionRequest functionRequest, String type, String wrapper, Function<Json, Json> converter){
+        final Json params = functionRequest.getJsonParams() != null ? functionRequest.getJsonParams() : Json.map();
+        final String functionId = functionRequest.getFunctionId();
+        final int firstPage = Convert.toInt(params.string("page"), 1);
+        // pages are read after the function returned, so they are measured on their own
+        final FunctionMetrics.Call background = functionMetrics.detached(function + BACKGROUND_SUFFIX);
+        final PagedReader reader = new PagedReader(listExecutor, Convert.toInt(params.string("perPage"), PagedReader.DEFAULT_PER_PAGE),
+                pageFetcher(type, wrapper, background));
+        logger.info("Listing [{}] from Chargify - first page [{}] - per page [{}]", type, firstPage, reader.getPerPage());
+
+        listExecutor.submit(() -> {
+            final int[] total = {0};
+            try {
+                reader.read(firstPage, (page, items, last) -> {
+                    final Json converted = Json.list();
+                    for (Json item : items) {
+                        indexResource(wrapper, item);
+                        converted.push(converter.apply(item));
+                    }
+                    total[0] += items.size();
+                    events().send(LIST_PAGE_EVENT, Json.map()
+                            .set("resource", type)
+                            .set("page", page)
+                            .set("items", converted)
+                            .set("last", last), functionId);
+                });
+                logger.info("Listed [{}] {} from Chargify", total[0], type);
+            } catch (Exception ex) {
+                background.failed(ex);
+                logger.warn("Error listing [{}] from Chargify after [{}] items: {}", type, total[0], ex.getMessage());
+                events().send(LIST_PAGE_EVENT, Json.map()
+                        .set("resource", type)
+                        .set("last", true)
+                        .set("error", true)
+                        .set("message", ex.getMessage()), functionId);
+            } finally {
+                background.finish();
+            }
+        });
+        return Json.map().set("resource", type).set("page", firstPage).set("perPage", reader.getPerPage());
+    }
+
+    /**
+     * Logs the ids of the resulting resource and the time taken by the call. The whole resource
+     * is only logged at debug level.
+     */
+    private void logResult(String message, Json converted, long start){
+        if(logger.isInfoEnabled()) {
+            logger.info("{} - id [{}] - chargify id [{}] - {} ms", message, converted.string("id"), converted.string("chargifyId"),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        logger.debug("{} [{}]", message, LogPayload.masked(converted));
+    }
+
+    /**
+     * Adds the ids of the resource (in the Chargify format) and its embedded resources to the
+     * indexes used to validate the references of the subscriptions
+     */
+    private void indexResource(String wrapper, Json chargifyResource){
+        if(customerIds == null || chargifyResource == null){
+            return;
+        }
+        switch (wrapper) {
+            case WRAPPER_CUSTOMER:
+                customerIds.add(Convert.toInt(chargifyResource.string("id"), -1));
+                break;
+            case WRAPPER_PAYMENT_PROFILE:
+                paymentProfileIds.add(Convert.toInt(chargifyResource.string("id"), -1));
+                customerIds.add(Convert.toInt(chargifyResource.string("customer_id"), -1));
+                break;
+            case WRAPPER_SUBSCRIPTION:
+                indexResource(WRAPPER_CUSTOMER, chargifyResource.json(WRAPPER_CUSTOMER));
+                indexResource(WRAPPER_PAYMENT_PROFILE, chargifyResource.json("credit_card"));
+                indexResource(WRAPPER_PAYMENT_PROFILE, chargifyResource.json("bank_account"));
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Returns false only when the id is not on the index of known ids and Chargify confirms that
+     * the resource does not exist. Resources created outside the endpoint are found on Chargify
+     * and added to the index. Any other error leaves the validation to Chargify.
+     */
+    private boolean mayExist(IdIndex index, String type, int chargifyId){
+        if(index == null || chargifyId < 1 || index.mayExist(chargifyId)){
+            return true;
+        }
+        final HttpRequest request = generateRequest(RestMethod.GET, type, chargifyId);
+        try {
+            execute(() -> httpService().httpGet(request));
+        } catch (EndpointException ex) {
+            if ("HTTP 404 Not Found".equalsIgnoreCase(ex.getMessage())) {
+                return false;
+            }
+            logger.warn("Error checking [{}] [{}] on Chargify: {}", type, chargifyId, ex.getMessage());
+            return true;
+        }
+        index.add(chargifyId);
+        return true;
+    }
+
+    /**
+     * Reads all the ids of the given resource. The index is complete when all of them were read.
+     */
+    private void loadIds(String type, String wrapper, IdIndex index){
+        final long start = System.nanoTime();
+        try {
+            final PagedReader reader = new PagedReader(listExecutor, PagedReader.MAX_PER_PAGE, pageFetcher(type, wrapper, null));
+            reader.read(1, (page, items, last) -> {
+                for (Json item : items) {
+                    index.add(Convert.toInt(item.string("id"), -1));
+                }
+            });
+            index.markComplete();
+            logger.info("Ids of [{}] loaded: [{}] - [{}] ms", type, index.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception ex) {
+            // references are not validated locally
+            logger.warn("Error loading the ids of [{}], references will be validated by Chargify: {}", type, ex.getMessage());
+        }
+    }
+
+    private static String header(WebServiceRequest request, String name){
+        final String value = request.getHeader(name);
+        return value != null ? value : request.getHeader(name.toLowerCase());
+    }
+
+    private static WebServiceResponse webServiceResponse(int httpCode, String body){
+        final WebServiceResponse response = new WebServiceResponse(body);
+        response.setHttpCode(httpCode);
+        return response;
+    }
+
     private Json request(){
         return Json.map().set(UNIQUENESS_TOKEN, Strings.randomUUID());
     }
@@ -394,19 +1616,66 @@ public class ChargifyEndpoint extends HttpEndpoint {
         return request().set(wrapper, request);
     }
 
-    private HttpRequest generateRequest(RestMethod restMethod, String type){
+    private Json wrapRequest(String wrapper, Json request, String uniquenessToken){
+        return Json.map().set(UNIQUENESS_TOKEN, uniquenessToken).set(wrapper, request);
+    }
+
+    /**
+     * Sends a creation to Chargify only once. When the 'idempotencyKey' parameter is given the
+     * uniqueness token is derived from it and the result is stored, so a call retried by the app
+     * returns the stored result without a new request. Calls without key are always sent.
+     *
+     * <p>Concurrent calls with the same key are serialized: only the first one looks up the store
+     * and sends the creation, the others wait for it and get a copy of its result.
+     */
+    private Json sendOnce(String wrapper, Json body, Function<String, Json> sender){
+        final String idempotencyKey = body.string(IDEMPOTENCY_KEY);
+        final String token = idempotencyStore.token(wrapper, idempotencyKey);
+        if(StringUtils.isBlank(idempotencyKey)){
+            return sender.apply(token);
+        }
+        final long start = System.nanoTime();
+        final boolean[] executed = {false};
+        try {
+            return pendingCreations.execute(token, () -> {
+                executed[0] = true;
+                return sendOnce(token, sender);
+            });
+        } finally {
+            if(!executed[0]){
+                functionMetrics.recordWait(System.nanoTime() - start);
+            }
+        }
+    }
+
+    private Json sendOnce(String token, Function<String, Json> sender){
+        final long start = System.nanoTime();
+        final Json stored = idempotencyStore.find(token);
+        functionMetrics.recordWait(System.nanoTime() - start);
+        if(stored != null){
+            logger.info("Request [{}] already sent to Chargify, returning the stored result", token);
+            return stored;
+        }
+        final Json result = sender.apply(token);
+        final long saveStart = System.nanoTime();
+        idempotencyStore.save(token, result);
+        functionMetrics.recordWait(System.nanoTime() - saveStart);
+        return result;
+    }
+
+    private static HttpRequest generateRequest(RestMethod restMethod, String type){
         return generateRequest(restMethod, type, -1, null);
     }
 
-    private HttpRequest generateRequest(RestMethod restMethod, String type, int chargifyId){
+    private static HttpRequest generateRequest(RestMethod restMethod, String type, int chargifyId){
         return generateRequest(restMethod, type, chargifyId, null);
     }
 
-    private HttpRequest generateRequest(RestMethod restMethod, String type, String reference){
+    private static HttpRequest generateRequest(RestMethod restMethod, String type, String reference){
         return generateRequest(restMethod, type, -1, reference);
     }
 
-    private HttpRequest generateRequest(RestMethod restMethod, String type, int chargifyId, String reference){
+    private static HttpRequest generateRequest(RestMethod restMethod, String type, int chargifyId, String reference){
         HttpRequest request;
         if(chargifyId < 1) {
             if(StringUtils.isNotBlank(reference)){
@@ -0,0 +1,198 @@
+package io.slingr.endpoints.chargify.metrics;
+
+import io.slingr.endpoints.exceptions.EndpointException;
+import io.slingr.endpoints.utils.Json;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * <p>Latencies and errors of the functions of the endpoint. For every function it keeps the total
+ * time, the time waiting for the responses of Chargify, the time waiting to send the requests
+ * (rate limit, retries of throttled requests, coalesced reads and the data store), the time spent
+ * converting and validating the resources (the rest of the total time), and the number of errors
+ * by error code.
+ *
+ * <p>The call in progress is kept on the thread, so the requests sent to Chargify while executing
+ * the function are added to its times. Tasks running on pools get the call explicitly through
+ * {@link #within(Call, Supplier)}. When requests are sent in parallel their times are added up, so
+ * they can be greater than the total time and the conversion time is not lower than 0.
+ */
+public class FunctionMetrics {
+
+    private static final String UNEXPECTED_ERROR = "UNEXPECTED";
+
+    private final ConcurrentMap<String, Stats> functions = new ConcurrentHashMap<>();
+    private final ThreadLocal<Call> current = new ThreadLocal<>();
+
+    /**
+     * Starts a call on the current thread, nested in the call already in progress if there is one
+     */
+    public Call start(String function) {
+        final Call call = new Call(stats(function), current.get(), true);
+        current.set(call);
+        return call;
+    }
+
+    /**
+     * Starts a call that is not bound to any thread, used by the work that continues in background
+     * after the function returned
+     */
+    public Call detached(String function) {
+        return new Call(stats(function), null, false);
+    }
+
+    /**
+     * Call in progress on the current thread, or null
+     */
+    public Call current() {
+        return current.get();
+    }
+
+    /**
+     * Executes the task adding its requests to the given call, which can be null
+     */
+    public <T> T within(Call call, Supplier<T> task) {
+        if (call == null) {
+            return task.get();
+        }
+        final Call previous = current.get();
+        current.set(call);
+        try {
+            return task.get();
+        } finally {
+            if (previous != null) {
+                current.set(previous);
+            } else {
+                current.remove();
+            }
+        }
+    }
+
+    private Stats stats(String function) {
+        return functions.computeIfAbsent(function, name -> new Stats());
+    }
+
+    /**
+     * Adds the time of a request to Chargify to the call in progress on the thread, if there is one.
+     * The wait is the time the request was held before being sent.
+     */
+    public void recordRequest(long httpNanos, long waitNanos) {
+        final Call call = current.get();
+        if (call != null) {
+            call.httpNanos.add(httpNanos);
+            call.waitNanos.add(waitNanos);
+        }
+    }
+
+    /**
+     * Adds time waiting for something other than Chargify to the call in progress on the thread
+     */
+    public void recordWait(long nanos) {
+        final Call call = current.get();
+        if (call != null) {
+            call.waitNanos.add(nanos);
+        }
+    }
+
+    public void write(PrometheusFormat format) {
+        for (Map.Entry<String, Stats> function : functions.entrySet()) {
+            final Stats stats = function.getValue();
+            format.latencySummary("chargify_function_duration_seconds", "Total time of the functions",
+                    stats.total, "function", function.getKey());
+        }
+        for (Map.Entry<String, Stats> function : functions.entrySet()) {
+            format.latencySummary("chargify_function_http_seconds", "Time of the functions waiting for Chargify",
+                    function.getValue().http, "function", function.getKey());
+        }
+        for (Map.Entry<String, Stats> function : functions.entrySet()) {
+            format.latencySummary("chargify_function_wait_seconds", "Time of the functions waiting to send requests",
+                    function.getValue().wait, "function", function.getKey());
+        }
+        for (Map.Entry<String, Stats> function : functions.entrySet()) {
+            format.latencySummary("chargify_function_conversion_seconds", "Time of the functions converting and validating resources",
+                    function.getValue().conversion, "function", function.getKey());
+        }
+        for (Map.Entry<String, Stats> function : functions.entrySet()) {
+            for (Map.Entry<String, LongAdder> error : function.getValue().errors.entrySet()) {
+                format.counter("chargify_function_errors_total", "Errors of the functions by error code",
+                        error.getValue().sum(), "function", function.getKey(), "code", error.getKey());
+            }
+        }
+    }
+
+    public Json stats() {
+        final Json json = Json.map();
+        for (Map.Entry<String, Stats> function : functions.entrySet()) {
+            final Stats stats = function.getValue();
+            final Json errors = Json.map();
+            for (Map.Entry<String, LongAdder> error : stats.errors.entrySet()) {
+                errors.set(error.getKey(), error.getValue().sum());
+            }
+            json.set(function.getKey(), Json.map()
+                    .set("total", stats.total.latencyStats())
+                    .set("http", stats.http.latencyStats())
+                    .set("wait", stats.wait.latencyStats())
+                    .set("conversion", stats.conversion.latencyStats())
+                    .set("errors", errors));
+        }
+        return json;
+    }
+
+    private static class Stats {
+        private final Histogram total = new Histogram();
+        private final Histogram http = new Histogram();
+        private final Histogram wait = new Histogram();
+        private final Histogram conversion = new Histogram();
+        private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+    }
+
+    public class Call {
+        private final Stats stats;
+        private final Call previous;
+        private final boolean bound;
+        private final long start = System.nanoTime();
+        private final LongAdder httpNanos = new LongAdder();
+        private final LongAdder waitNanos = new LongAdder();
+
+        private Call(Stats stats, Call previous, boolean bound) {
+            this.stats = stats;
+            this.previous = previous;
+            this.bound = bound;
+        }
+
+        public void failed(Throwable throwable) {
+            final String code = throwable instanceof EndpointException && ((EndpointException) throwable).getCode() != null
+                    ? ((EndpointException) throwable).getCode().name()
+                    : UNEXPECTED_ERROR;
+            stats.errors.computeIfAbsent(code, key -> new LongAdder()).increment();
+        }
+
+        public void finish() {
+            final long total = System.nanoTime() - start;
+            final long http = httpNanos.sum();
+            final long wait = waitNanos.sum();
+            stats.total.recordNanos(total);
+            if (http > 0) {
+                stats.http.recordNanos(http);
+            }
+            if (wait > 0) {
+                stats.wait.recordNanos(wait);
+            }
+            stats.conversion.recordNanos(Math.max(0, total - http - wait));
+            if (!bound) {
+                return;
+            }
+            if (previous != null) {
+                previous.httpNanos.add(http);
+                previous.waitNanos.add(wait);
+                current.set(previous);
+            } else {
+                current.remove();
+            }
+        }
+    }
+}
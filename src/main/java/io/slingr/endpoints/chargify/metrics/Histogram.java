@@ -0,0 +1,124 @@
+package io.slingr.endpoints.chargify.metrics;
+
+import io.slingr.endpoints.utils.Json;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Histogram with logarithmic buckets, like the HDR histograms: every power of two is split in
+ * 8 linear sub-buckets, so the recorded values keep an error lower than 12.5%. Values up to 2^41
+ * can be recorded, latencies are recorded in microseconds.
+ *
+ * <p>Recording is lock-free, it only increments atomic counters. Readings are not an atomic
+ * snapshot of the histogram, values recorded while reading can be partially included.
+ */
+public class Histogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a latency, in microseconds
+     */
+    public void recordNanos(long nanos) {
+        record(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public void record(long value) {
+        final long recorded = Math.max(0, value);
+        counts.incrementAndGet(index(recorded));
+        count.increment();
+        sum.add(recorded);
+        if (recorded > max.get()) {
+            max.accumulateAndGet(recorded, Math::max);
+        }
+    }
+
+    static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(value);
+        final int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return Math.min((exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket, BUCKETS - 1);
+    }
+
+    /**
+     * Highest value stored on the bucket
+     */
+    static long upperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        final int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        final int subBucket = index % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sum() {
+        return sum.sum();
+    }
+
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * Values for the given quantiles (between 0 and 1), calculated on the same reading of the
+     * buckets
+     */
+    public long[] quantiles(double... quantiles) {
+        final long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        final long[] values = new long[quantiles.length];
+        if (total == 0) {
+            return values;
+        }
+        final long max = this.max.get();
+        for (int q = 0; q < quantiles.length; q++) {
+            final long target = Math.max(1, (long) Math.ceil(quantiles[q] * total));
+            long accumulated = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                accumulated += snapshot[i];
+                if (accumulated >= target) {
+                    values[q] = Math.min(upperBound(i), max);
+                    break;
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Stats of a histogram of latencies, in milliseconds
+     */
+    public Json latencyStats() {
+        final long count = count();
+        final long[] quantiles = quantiles(0.5, 0.9, 0.99);
+        return Json.map()
+                .set("count", count)
+                .set("meanMillis", count > 0 ? sum() / 1000.0 / count : 0.0)
+                .set("p50Millis", quantiles[0] / 1000.0)
+                .set("p90Millis", quantiles[1] / 1000.0)
+                .set("p99Millis", quantiles[2] / 1000.0)
+                .set("maxMillis", max() / 1000.0);
+    }
+}
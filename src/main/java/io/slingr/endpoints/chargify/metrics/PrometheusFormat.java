@@ -0,0 +1,106 @@
+package io.slingr.endpoints.chargify.metrics;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * <p>Writer of metrics in the text format of Prometheus. Histograms are written as summaries with
+ * the most used quantiles, in seconds.
+ */
+public class PrometheusFormat {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99", "0.999"};
+
+    private final StringBuilder text = new StringBuilder(4096);
+    private final Set<String> described = new HashSet<>();
+
+    /**
+     * Writes the help and type of the metric, only the first time it is used
+     */
+    private void describe(String name, String type, String help) {
+        if (described.add(name)) {
+            text.append("# HELP ").append(name).append(' ').append(help).append('\n');
+            text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        }
+    }
+
+    public PrometheusFormat counter(String name, String help, long value, String... labels) {
+        describe(name, "counter", help);
+        sample(name, labels, null, null).append(value).append('\n');
+        return this;
+    }
+
+    public PrometheusFormat gauge(String name, String help, double value, String... labels) {
+        describe(name, "gauge", help);
+        sample(name, labels, null, null).append(value).append('\n');
+        return this;
+    }
+
+    /**
+     * Summary of a histogram of latencies, written in seconds
+     */
+    public PrometheusFormat latencySummary(String name, String help, Histogram histogram, String... labels) {
+        return summary(name, help, histogram, 1e6, labels);
+    }
+
+    /**
+     * Summary of a histogram, each value is divided by the given scale
+     */
+    public PrometheusFormat summary(String name, String help, Histogram histogram, double scale, String... labels) {
+        describe(name, "summary", help);
+        final long count = histogram.count();
+        final long[] quantiles = histogram.quantiles(QUANTILES);
+        for (int i = 0; i < QUANTILES.length; i++) {
+            sample(name, labels, "quantile", QUANTILE_LABELS[i]).append(quantiles[i] / scale).append('\n');
+        }
+        sample(name + "_sum", labels, null, null).append(histogram.sum() / scale).append('\n');
+        sample(name + "_count", labels, null, null).append(count).append('\n');
+        return this;
+    }
+
+    private StringBuilder sample(String name, String[] labels, String extraLabel, String extraValue) {
+        text.append(name);
+        if (labels.length > 0 || extraLabel != null) {
+            text.append('{');
+            boolean first = true;
+            for (int i = 0; i + 1 < labels.length; i += 2) {
+                if (!first) {
+                    text.append(',');
+                }
+                first = false;
+                label(labels[i], labels[i + 1]);
+            }
+            if (extraLabel != null) {
+                if (!first) {
+                    text.append(',');
+                }
+                label(extraLabel, extraValue);
+            }
+            text.append('}');
+        }
+        return text.append(' ');
+    }
+
+    private void label(String name, String value) {
+        text.append(name).append("=\"");
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '\\' || c == '"') {
+                text.append('\\').append(c);
+            } else if (c == '\n') {
+                text.append("\\n");
+            } else {
+                text.append(c);
+            }
+        }
+        text.append('"');
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
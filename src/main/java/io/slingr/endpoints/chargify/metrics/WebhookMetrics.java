@@ -0,0 +1,111 @@
+package io.slingr.endpoints.chargify.metrics;
+
+import io.slingr.endpoints.utils.Json;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * <p>Metrics of the received webhooks by event type: number of webhooks received, discarded as
+ * duplicated and rejected, size of the payloads, and time to parse and to dispatch them to the app.
+ *
+ * <p>Event types are sent by Chargify, but the number of different types is limited anyway so
+ * invalid webhooks cannot create unlimited metrics.
+ */
+public class WebhookMetrics {
+
+    private static final int MAX_EVENT_TYPES = 100;
+    private static final String UNKNOWN_EVENT = "unknown";
+    private static final String OTHER_EVENT = "other";
+
+    private final ConcurrentMap<String, Event> events = new ConcurrentHashMap<>();
+
+    public Event event(String type) {
+        final String key = StringUtils.isBlank(type) ? UNKNOWN_EVENT : type;
+        final Event event = events.get(key);
+        if (event != null) {
+            return event;
+        }
+        if (events.size() >= MAX_EVENT_TYPES) {
+            return events.computeIfAbsent(OTHER_EVENT, name -> new Event());
+        }
+        return events.computeIfAbsent(key, name -> new Event());
+    }
+
+    public void write(PrometheusFormat format) {
+        for (Map.Entry<String, Event> event : events.entrySet()) {
+            format.counter("chargify_webhooks_received_total", "Webhooks received by event type",
+                    event.getValue().received.sum(), "event", event.getKey());
+        }
+        for (Map.Entry<String, Event> event : events.entrySet()) {
+            format.counter("chargify_webhooks_duplicated_total", "Webhooks discarded because they were already received",
+                    event.getValue().duplicated.sum(), "event", event.getKey());
+        }
+        for (Map.Entry<String, Event> event : events.entrySet()) {
+            format.counter("chargify_webhooks_rejected_total", "Webhooks rejected because the queue was full",
+                    event.getValue().rejected.sum(), "event", event.getKey());
+        }
+        for (Map.Entry<String, Event> event : events.entrySet()) {
+            format.summary("chargify_webhooks_payload_bytes", "Size of the payload of the webhooks",
+                    event.getValue().size, 1, "event", event.getKey());
+        }
+        for (Map.Entry<String, Event> event : events.entrySet()) {
+            format.latencySummary("chargify_webhooks_parse_seconds", "Time to parse the webhooks",
+                    event.getValue().parse, "event", event.getKey());
+        }
+        for (Map.Entry<String, Event> event : events.entrySet()) {
+            format.latencySummary("chargify_webhooks_dispatch_seconds", "Time to send the webhooks to the app",
+                    event.getValue().dispatch, "event", event.getKey());
+        }
+    }
+
+    public Json stats() {
+        final Json json = Json.map();
+        for (Map.Entry<String, Event> entry : events.entrySet()) {
+            final Event event = entry.getValue();
+            final long count = event.size.count();
+            json.set(entry.getKey(), Json.map()
+                    .set("received", event.received.sum())
+                    .set("duplicated", event.duplicated.sum())
+                    .set("rejected", event.rejected.sum())
+                    .set("averageBytes", count > 0 ? event.size.sum() / count : 0)
+                    .set("maxBytes", event.size.max())
+                    .set("parse", event.parse.latencyStats())
+                    .set("dispatch", event.dispatch.latencyStats()));
+        }
+        return json;
+    }
+
+    public static class Event {
+        private final LongAdder received = new LongAdder();
+        private final LongAdder duplicated = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final Histogram size = new Histogram();
+        private final Histogram parse = new Histogram();
+        private final Histogram dispatch = new Histogram();
+
+        public void received(int bytes) {
+            received.increment();
+            size.record(bytes);
+        }
+
+        public void duplicated() {
+            duplicated.increment();
+        }
+
+        public void rejected() {
+            rejected.increment();
+        }
+
+        public void parsed(long nanos) {
+            parse.recordNanos(nanos);
+        }
+
+        public void dispatched(long nanos) {
+            dispatch.recordNanos(nanos);
+        }
+    }
+}
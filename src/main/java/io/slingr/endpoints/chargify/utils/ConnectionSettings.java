@@ -0,0 +1,57 @@
+package io.slingr.endpoints.chargify.utils;
+
+/**
+ * <p>Settings of the connections to Chargify read from the properties of the endpoint: the
+ * timeouts of the requests and the number of connections opened when the endpoint starts.
+ * Empty or invalid values take the defaults, timeouts lower than 1 are not applied.
+ */
+public class ConnectionSettings {
+
+    public static final int DEFAULT_CONNECT_TIMEOUT = 10000;
+    public static final int DEFAULT_READ_TIMEOUT = 60000;
+    public static final int DEFAULT_WARM_UP_CONNECTIONS = 2;
+    // idle connections kept alive per host by the JDK
+    public static final int MAX_WARM_UP_CONNECTIONS = 5;
+
+    private final int connectTimeout;
+    private final int readTimeout;
+    private final int warmUpConnections;
+
+    ConnectionSettings(int connectTimeout, int readTimeout, int warmUpConnections) {
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.warmUpConnections = warmUpConnections;
+    }
+
+    /**
+     * Reads the settings. Connections are opened by default only when the warm-up is enabled,
+     * otherwise only when the number of connections is explicitly configured.
+     */
+    public static ConnectionSettings fromProperties(String connectTimeout, String readTimeout, String warmUpConnections, boolean warmUp) {
+        final int connections = Convert.toInt(warmUpConnections, warmUp ? DEFAULT_WARM_UP_CONNECTIONS : 0);
+        return new ConnectionSettings(
+                Convert.toInt(connectTimeout, DEFAULT_CONNECT_TIMEOUT),
+                Convert.toInt(readTimeout, DEFAULT_READ_TIMEOUT),
+                Math.max(0, Math.min(connections, MAX_WARM_UP_CONNECTIONS)));
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public boolean hasConnectTimeout() {
+        return connectTimeout > 0;
+    }
+
+    public boolean hasReadTimeout() {
+        return readTimeout > 0;
+    }
+
+    public int getWarmUpConnections() {
+        return warmUpConnections;
+    }
+}
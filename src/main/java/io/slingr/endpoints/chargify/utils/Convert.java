@@ -5,8 +5,12 @@ import io.slingr.endpoints.exceptions.ErrorCode;
 import io.slingr.endpoints.utils.Json;
 import org.apache.commons.lang3.StringUtils;
 
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * <p>Converters and checkers used by the Chargify endpoint classes
@@ -15,6 +19,124 @@ import java.util.List;
  */
 public class Convert {
 
+    private static final FieldMapping CUSTOMER_FIELDS = FieldMapping.builder()
+            .field("id", "reference")
+            .field("chargifyId", "id")
+            .field("firstName", "first_name")
+            .field("lastName", "last_name")
+            .field("email", "email")
+            .field("organization", "organization")
+            .field("vat", "vat_number")
+            .field("shippingAddress1", "address")
+            .field("shippingAddress2", "address_2")
+            .field("shippingCity", "city")
+            .field("shippingState", "state")
+            .field("shippingZipCode", "zip")
+            .field("shippingCountry", "country")
+            .field("phone", "phone")
+            .fromChargify("createdAt", "created_at")
+            .fromChargify("updatedAt", "updated_at")
+            .build();
+
+    // fields before the card number, the masked number is handled by the converter
+    private static final FieldMapping PAYMENT_PROFILE_HEAD_FIELDS = FieldMapping.builder()
+            .field("chargifyId", "id")
+            .field("customerId", "customer_id")
+            .field("paymentType", "payment_type")
+            .field("firstName", "first_name")
+            .field("lastName", "last_name")
+            .field("creditCardNumber", "full_number")
+            .build();
+
+    private static final FieldMapping PAYMENT_PROFILE_FIELDS = FieldMapping.builder()
+            .fromChargify("creditCardType", "card_type")
+            .field("expirationMonth", "expiration_month")
+            .field("expirationYear", "expiration_year")
+            .field("cvv", "cvv")
+            .field("billingAddress1", "billing_address")
+            .field("billingAddress2", "billing_address_2")
+            .field("billingCity", "billing_city")
+            .field("billingState", "billing_state")
+            .field("billingZipCode", "billing_zip")
+            .field("billingCountry", "billing_country")
+            .field("bankName", "bank_name")
+            .field("bankRoutingNumber", "bank_routing_number")
+            .field("bankAccountNumber", "bank_account_number")
+            .field("bankAccountType", "bank_account_type")
+            .field("bankAccountHolderType", "bank_account_holder_type")
+            .build();
+
+    private static final FieldMapping PAYMENT_PROFILE_COMPATIBILITY_FIELDS = FieldMapping.builder()
+            .fromChargify("firstNameOnCard", "first_name")
+            .fromChargify("lastNameOnCard", "last_name")
+            .fromChargify("code", "cvv")
+            .build();
+
+    private static final FieldMapping SUBSCRIPTION_HEAD_FIELDS = FieldMapping.builder()
+            .field("chargifyId", "id")
+            .field("state", "state")
+            .field("previousState", "previous_state")
+            .build();
+
+    // references are converted to SLINGR together with the embedded resources
+    private static final FieldMapping SUBSCRIPTION_REFERENCE_FIELDS = FieldMapping.builder()
+            .toChargify("customerId", "customer_id")
+            .toChargify("paymentProfileId", "payment_profile_id")
+            .toChargify("productHandle", "product_handle")
+            .build();
+
+    private static final FieldMapping SUBSCRIPTION_FIELDS = FieldMapping.builder()
+            .fromChargify("createdAt", "created_at")
+            .fromChargify("updatedAt", "updated_at")
+            .fromChargify("archivedAt", "archived_at")
+            .fromChargify("currentPeriodStartedAt", "current_period_started_at")
+            .fromChargify("currentPeriodEndsAt", "current_period_ends_at")
+            .fromChargify("nextAssessmentAt", "next_assessment_at")
+            .fromChargify("delayedCancelAt", "delayed_cancel_at")
+            .fromChargify("expiresAt", "expires_at")
+            .fromChargify("canceledAt", "canceled_at")
+            .field("cancellationMessage", "cancellation_message")
+            .fromChargify("cancelAtEndOfPeriod", "cancel_at_end_of_period")
+            .fromChargify("balanceInCents", "balance_in_cents")
+            .fromChargify("couponCode", "coupon_code")
+            .fromChargify("paymentCollectionMethod", "payment_collection_method")
+            .fromChargify("productPriceInCents", "product_price_in_cents")
+            .fromChargify("productVersionNumber", "product_version_number")
+            .fromChargify("signupPaymentId", "signup_payment_id")
+            .fromChargify("signupRevenue", "signup_revenue")
+            .fromChargify("totalRevenueInCents", "total_revenue_in_cents")
+            .fromChargify("trialStartedAt", "trial_started_at")
+            .fromChargify("trialEndedAt", "trial_ended_at")
+            .build();
+
+    private static final FieldMapping PRODUCT_HEAD_FIELDS = FieldMapping.builder()
+            .fromChargify("chargifyId", "id")
+            .fromChargify("handle", "handle")
+            .fromChargify("name", "name")
+            .fromChargify("description", "description")
+            .build();
+
+    private static final FieldMapping PRODUCT_FAMILY_FIELDS = FieldMapping.builder()
+            .fromChargify("handle", "handle")
+            .fromChargify("name", "name")
+            .fromChargify("description", "description")
+            .build();
+
+    private static final FieldMapping PRODUCT_FIELDS = FieldMapping.builder()
+            .fromChargify("intervalUnit", "interval_unit")
+            .fromChargify("interval", "interval")
+            .fromChargify("initialChargeInCents", "initial_charge_in_cents")
+            .fromChargify("trialPriceInCents", "trial_price_in_cents")
+            .fromChargify("trialInterval", "trial_interval")
+            .fromChargify("trialIntervalUnit", "trial_interval_unit")
+            .fromChargify("expirationInterval", "expiration_interval")
+            .fromChargify("expirationIntervalUnit", "expiration_interval_unit")
+            .fromChargify("versionNumber", "version_number")
+            .fromChargify("createdAt", "created_at")
+            .fromChargify("updatedAt", "updated_at")
+            .fromChargify("archivedAt", "archived_at")
+            .build();
+
     public static void checkJson(String label, Json json) throws EndpointException {
         if(json == null || json.isEmpty()){
             throw EndpointException.permanent(ErrorCode.ARGUMENT, String.format("%s is empty", label));
@@ -54,6 +176,104 @@ public class Convert {
         }
     }
 
+    public static int toInt(String value, int defaultValue) {
+        if(StringUtils.isBlank(value)){
+            return defaultValue;
+        }
+        try{
+            return Integer.parseInt(value.trim());
+        }catch (Exception ex){
+            return defaultValue;
+        }
+    }
+
+    public static long toLong(String value, long defaultValue) {
+        if(StringUtils.isBlank(value)){
+            return defaultValue;
+        }
+        try{
+            return Long.parseLong(value.trim());
+        }catch (Exception ex){
+            return defaultValue;
+        }
+    }
+
+    /**
+     * Encodes the value to be used as a segment of the path of a request, like a handle
+     */
+    public static String toPathSegment(String value) {
+        try{
+            return URLEncoder.encode(value, "UTF-8").replace("+", "%20");
+        }catch (UnsupportedEncodingException ex){
+            throw new IllegalStateException("UTF-8 is not supported", ex);
+        }
+    }
+
+    /**
+     * Text of the json with the keys of the maps sorted, so the same content always gives the same
+     * text regardless of the order the keys were set
+     */
+    public static String toCanonicalString(Json json) {
+        final StringBuilder text = new StringBuilder();
+        appendCanonical(text, json);
+        return text.toString();
+    }
+
+    private static void appendCanonical(StringBuilder text, Object value) {
+        if(value instanceof Json){
+            final Json json = (Json) value;
+            appendCanonical(text, json.isList() ? json.toList() : json.toMap());
+        } else if(value instanceof Map){
+            final Map<String, Object> sorted = new TreeMap<>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                sorted.put(String.valueOf(entry.getKey()), entry.getValue());
+            }
+            text.append('{');
+            boolean first = true;
+            for (Map.Entry<String, Object> entry : sorted.entrySet()) {
+                if(!first){
+                    text.append(',');
+                }
+                first = false;
+                appendCanonical(text, entry.getKey());
+                text.append(':');
+                appendCanonical(text, entry.getValue());
+            }
+            text.append('}');
+        } else if(value instanceof List){
+            text.append('[');
+            boolean first = true;
+            for (Object item : (List<?>) value) {
+                if(!first){
+                    text.append(',');
+                }
+                first = false;
+                appendCanonical(text, item);
+            }
+            text.append(']');
+        } else if(value instanceof CharSequence){
+            text.append('"').append(value.toString().replace("\\", "\\\\").replace("\"", "\\\"")).append('"');
+        } else {
+            text.append(value);
+        }
+    }
+
+    /**
+     * Chargify returns lists as arrays of wrapped resources, like <code>[{"customer": {...}}, ...]</code>
+     */
+    public static List<Json> unwrapList(Json response, String wrapper) {
+        final List<Json> items = new ArrayList<>();
+        if(response != null && response.isList()) {
+            for (Object object : response.toList()) {
+                final Json item = Json.fromObject(object);
+                if(item != null && item.contains(wrapper)) {
+                    items.add(item.json(wrapper));
+                }
+            }
+        }
+        return items;
+    }
+
     public static Json customerToSlingr(Json chargifyCustomer, String slingrId) {
         final Json response = customerToSlingr(chargifyCustomer);
         if(StringUtils.isBlank(response.string("id"))) {
@@ -65,22 +285,7 @@ public class Convert {
     public static Json customerToSlingr(Json chargifyCustomer) {
         final Json response = Json.map();
         if(chargifyCustomer != null && !chargifyCustomer.isEmpty()) {
-            response.setIfNotNull("id", chargifyCustomer.string("reference"));
-            response.setIfNotNull("chargifyId", chargifyCustomer.string("id"));
-            response.setIfNotNull("firstName", chargifyCustomer.string("first_name"));
-            response.setIfNotNull("lastName", chargifyCustomer.string("last_name"));
-            response.setIfNotNull("email", chargifyCustomer.string("email"));
-            response.setIfNotNull("organization", chargifyCustomer.string("organization"));
-            response.setIfNotNull("vat", chargifyCustomer.string("vat_number"));
-            response.setIfNotNull("shippingAddress1", chargifyCustomer.string("address"));
-            response.setIfNotNull("shippingAddress2", chargifyCustomer.string("address_2"));
-            response.setIfNotNull("shippingCity", chargifyCustomer.string("city"));
-            response.setIfNotNull("shippingState", chargifyCustomer.string("state"));
-            response.setIfNotNull("shippingZipCode", chargifyCustomer.string("zip"));
-            response.setIfNotNull("shippingCountry", chargifyCustomer.string("country"));
-            response.setIfNotNull("phone", chargifyCustomer.string("phone"));
-            response.setIfNotNull("createdAt", chargifyCustomer.string("created_at"));
-            response.setIfNotNull("updatedAt", chargifyCustomer.string("updated_at"));
+            CUSTOMER_FIELDS.toSlingr(chargifyCustomer, response);
 
             response.setIfNotNull("removed", chargifyCustomer.bool("removed", false));
         }
@@ -90,20 +295,7 @@ public class Convert {
     public static Json customerToChargify(Json slingrCustomer) {
         final Json response = Json.map();
         if(slingrCustomer != null && !slingrCustomer.isEmpty()) {
-            response.setIfNotNull("reference", slingrCustomer.string("id"));
-            response.setIfNotNull("id", slingrCustomer.string("chargifyId"));
-            response.setIfNotNull("first_name", slingrCustomer.string("firstName"));
-            response.setIfNotNull("last_name", slingrCustomer.string("lastName"));
-            response.setIfNotNull("email", slingrCustomer.string("email"));
-            response.setIfNotNull("organization", slingrCustomer.string("organization"));
-            response.setIfNotNull("vat_number", slingrCustomer.string("vat"));
-            response.setIfNotNull("address", slingrCustomer.string("shippingAddress1"));
-            response.setIfNotNull("address_2", slingrCustomer.string("shippingAddress2"));
-            response.setIfNotNull("city", slingrCustomer.string("shippingCity"));
-            response.setIfNotNull("state", slingrCustomer.string("shippingState"));
-            response.setIfNotNull("zip", slingrCustomer.string("shippingZipCode"));
-            response.setIfNotNull("country", slingrCustomer.string("shippingCountry"));
-            response.setIfNotNull("phone", slingrCustomer.string("phone"));
+            CUSTOMER_FIELDS.toChargify(slingrCustomer, response);
         }
         return response;
     }
@@ -139,38 +331,18 @@ public class Convert {
     public static Json paymentProfileToSlingr(Json chargifyPaymentProfile) {
         final Json response = Json.map();
         if(chargifyPaymentProfile != null && !chargifyPaymentProfile.isEmpty()) {
-            response.setIfNotNull("chargifyId", chargifyPaymentProfile.string("id"));
-            response.setIfNotNull("customerId", chargifyPaymentProfile.string("customer_id"));
-            response.setIfNotNull("paymentType", chargifyPaymentProfile.string("payment_type"));
-            response.setIfNotNull("firstName", chargifyPaymentProfile.string("first_name"));
-            response.setIfNotNull("lastName", chargifyPaymentProfile.string("last_name"));
-            response.setIfNotNull("creditCardNumber", chargifyPaymentProfile.string("full_number"));
-            if(StringUtils.isNotBlank(chargifyPaymentProfile.string("masked_card_number"))) {
+            PAYMENT_PROFILE_HEAD_FIELDS.toSlingr(chargifyPaymentProfile, response);
+            final String maskedCardNumber = chargifyPaymentProfile.string("masked_card_number");
+            if(StringUtils.isNotBlank(maskedCardNumber)) {
                 response.setIfNotNull("originalCreditCardNumber", response.string("creditCardNumber"));
-                response.setIfNotNull("creditCardNumber", chargifyPaymentProfile.string("masked_card_number"));
+                response.setIfNotNull("creditCardNumber", maskedCardNumber);
             }
-            response.setIfNotNull("creditCardType", chargifyPaymentProfile.string("card_type"));
-            response.setIfNotNull("expirationMonth", chargifyPaymentProfile.string("expiration_month"));
-            response.setIfNotNull("expirationYear", chargifyPaymentProfile.string("expiration_year"));
-            response.setIfNotNull("cvv", chargifyPaymentProfile.string("cvv"));
-            response.setIfNotNull("billingAddress1", chargifyPaymentProfile.string("billing_address"));
-            response.setIfNotNull("billingAddress2", chargifyPaymentProfile.string("billing_address_2"));
-            response.setIfNotNull("billingCity", chargifyPaymentProfile.string("billing_city"));
-            response.setIfNotNull("billingState", chargifyPaymentProfile.string("billing_state"));
-            response.setIfNotNull("billingZipCode", chargifyPaymentProfile.string("billing_zip"));
-            response.setIfNotNull("billingCountry", chargifyPaymentProfile.string("billing_country"));
-            response.setIfNotNull("bankName", chargifyPaymentProfile.string("bank_name"));
-            response.setIfNotNull("bankRoutingNumber", chargifyPaymentProfile.string("bank_routing_number"));
-            response.setIfNotNull("bankAccountNumber", chargifyPaymentProfile.string("bank_account_number"));
-            response.setIfNotNull("bankAccountType", chargifyPaymentProfile.string("bank_account_type"));
-            response.setIfNotNull("bankAccountHolderType", chargifyPaymentProfile.string("bank_account_holder_type"));
+            PAYMENT_PROFILE_FIELDS.toSlingr(chargifyPaymentProfile, response);
 
             response.setIfNotNull("removed", chargifyPaymentProfile.bool("removed", false));
 
             // fields added for compatibility with old versions of the endpoint
-            response.setIfNotNull("firstNameOnCard", chargifyPaymentProfile.string("first_name"));
-            response.setIfNotNull("lastNameOnCard", chargifyPaymentProfile.string("last_name"));
-            response.setIfNotNull("code", chargifyPaymentProfile.string("cvv"));
+            PAYMENT_PROFILE_COMPATIBILITY_FIELDS.toSlingr(chargifyPaymentProfile, response);
         }
         return response;
     }
@@ -178,26 +350,8 @@ public class Convert {
     public static Json paymentProfileToChargify(Json slingrPaymentProfile) {
         final Json response = Json.map();
         if(slingrPaymentProfile != null && !slingrPaymentProfile.isEmpty()) {
-            response.setIfNotNull("id", slingrPaymentProfile.string("chargifyId"));
-            response.setIfNotNull("customer_id", slingrPaymentProfile.string("customerId"));
-            response.setIfNotNull("payment_type", slingrPaymentProfile.string("paymentType"));
-            response.setIfNotNull("first_name", slingrPaymentProfile.string("firstName"));
-            response.setIfNotNull("last_name", slingrPaymentProfile.string("lastName"));
-            response.setIfNotNull("full_number", slingrPaymentProfile.string("creditCardNumber"));
-            response.setIfNotNull("expiration_month", slingrPaymentProfile.string("expirationMonth"));
-            response.setIfNotNull("expiration_year", slingrPaymentProfile.string("expirationYear"));
-            response.setIfNotNull("cvv", slingrPaymentProfile.string("cvv"));
-            response.setIfNotNull("billing_address", slingrPaymentProfile.string("billingAddress1"));
-            response.setIfNotNull("billing_address_2", slingrPaymentProfile.string("billingAddress2"));
-            response.setIfNotNull("billing_city", slingrPaymentProfile.string("billingCity"));
-            response.setIfNotNull("billing_state", slingrPaymentProfile.string("billingState"));
-            response.setIfNotNull("billing_zip", slingrPaymentProfile.string("billingZipCode"));
-            response.setIfNotNull("billing_country", slingrPaymentProfile.string("billingCountry"));
-            response.setIfNotNull("bank_name", slingrPaymentProfile.string("bankName"));
-            response.setIfNotNull("bank_routing_number", slingrPaymentProfile.string("bankRoutingNumber"));
-            response.setIfNotNull("bank_account_number", slingrPaymentProfile.string("bankAccountNumber"));
-            response.setIfNotNull("bank_account_type", slingrPaymentProfile.string("bankAccountType"));
-            response.setIfNotNull("bank_account_holder_type", slingrPaymentProfile.string("bankAccountHolderType"));
+            PAYMENT_PROFILE_HEAD_FIELDS.toChargify(slingrPaymentProfile, response);
+            PAYMENT_PROFILE_FIELDS.toChargify(slingrPaymentProfile, response);
 
             // fields added for compatibility with old versions of the endpoint
             if(StringUtils.isNotBlank(response.string("first_name"))) {
@@ -285,71 +439,41 @@ public class Convert {
     public static Json subscriptionToSlingr(Json chargifySubscription) {
         final Json response = Json.map();
         if(chargifySubscription != null && !chargifySubscription.isEmpty()) {
-            response.setIfNotNull("chargifyId", chargifySubscription.string("id"));
-            response.setIfNotNull("state", chargifySubscription.string("state"));
-            response.setIfNotNull("previousState", chargifySubscription.string("previous_state"));
+            SUBSCRIPTION_HEAD_FIELDS.toSlingr(chargifySubscription, response);
 
             response.setIfNotNull("customerId", chargifySubscription.string("customer_id"));
-            final Json customer = customerToSlingr(chargifySubscription.json("customer"));
-            if(!customer.isEmpty()){
+            final Json chargifyCustomer = chargifySubscription.json("customer");
+            if(chargifyCustomer != null && !chargifyCustomer.isEmpty()) {
+                final Json customer = customerToSlingr(chargifyCustomer);
                 response.setIfNotNull("customer", customer);
-                if(StringUtils.isBlank(response.string("customerId")) && StringUtils.isNotBlank(customer.string("chargifyId"))){
-                    response.setIfNotNull("customerId", customer.string("chargifyId"));
-                }
+                setIfBlank(response, "customerId", customer.string("chargifyId"));
             }
 
             response.setIfNotNull("paymentProfileId", chargifySubscription.string("payment_profile_id"));
             final String paymentType = chargifySubscription.string("payment_type");
+            final Json chargifyPaymentProfile;
             if(StringUtils.isBlank(paymentType) || paymentType.equals("credit_card")){
-                Json creditCard = paymentProfileToSlingr(chargifySubscription.json("credit_card"));
-
-                if(!creditCard.isEmpty()){
-                    response.setIfNotNull("paymentProfile", creditCard);
-                    if(StringUtils.isBlank(response.string("paymentProfileId")) && StringUtils.isNotBlank(creditCard.string("chargifyId"))){
-                        response.setIfNotNull("paymentProfileId", creditCard.string("chargifyId"));
-                    }
-                }
+                chargifyPaymentProfile = chargifySubscription.json("credit_card");
             } else if(paymentType.equals("bank_account")){
-                Json bank_account = paymentProfileToSlingr(chargifySubscription.json("bank_account"));
-
-                if(!bank_account.isEmpty()){
-                    response.setIfNotNull("paymentProfile", bank_account);
-                    if(StringUtils.isBlank(response.string("paymentProfileId")) && StringUtils.isNotBlank(bank_account.string("chargifyId"))){
-                        response.setIfNotNull("paymentProfileId", bank_account.string("chargifyId"));
-                    }
-                }
+                chargifyPaymentProfile = chargifySubscription.json("bank_account");
+            } else {
+                chargifyPaymentProfile = null;
+            }
+            if(chargifyPaymentProfile != null && !chargifyPaymentProfile.isEmpty()) {
+                final Json paymentProfile = paymentProfileToSlingr(chargifyPaymentProfile);
+                response.setIfNotNull("paymentProfile", paymentProfile);
+                setIfBlank(response, "paymentProfileId", paymentProfile.string("chargifyId"));
             }
 
             response.setIfNotNull("productHandle", chargifySubscription.string("product_handle"));
-            final Json product = productToSlingr(chargifySubscription.json("product"));
-            if(!product.isEmpty()){
+            final Json chargifyProduct = chargifySubscription.json("product");
+            if(chargifyProduct != null && !chargifyProduct.isEmpty()) {
+                final Json product = productToSlingr(chargifyProduct);
                 response.setIfNotNull("product", product);
-                if(StringUtils.isBlank(response.string("productHandle")) && StringUtils.isNotBlank(product.string("handle"))){
-                    response.setIfNotNull("productHandle", product.string("handle"));
-                }
+                setIfBlank(response, "productHandle", product.string("handle"));
             }
 
-            response.setIfNotNull("createdAt", chargifySubscription.string("created_at"));
-            response.setIfNotNull("updatedAt", chargifySubscription.string("updated_at"));
-            response.setIfNotNull("archivedAt", chargifySubscription.string("archived_at"));
-            response.setIfNotNull("currentPeriodStartedAt", chargifySubscription.string("current_period_started_at"));
-            response.setIfNotNull("currentPeriodEndsAt", chargifySubscription.string("current_period_ends_at"));
-            response.setIfNotNull("nextAssessmentAt", chargifySubscription.string("next_assessment_at"));
-            response.setIfNotNull("delayedCancelAt", chargifySubscription.string("delayed_cancel_at"));
-            response.setIfNotNull("expiresAt", chargifySubscription.string("expires_at"));
-            response.setIfNotNull("canceledAt", chargifySubscription.string("canceled_at"));
-            response.setIfNotNull("cancellationMessage", chargifySubscription.string("cancellation_message"));
-            response.setIfNotNull("cancelAtEndOfPeriod", chargifySubscription.string("cancel_at_end_of_period"));
-            response.setIfNotNull("balanceInCents", chargifySubscription.string("balance_in_cents"));
-            response.setIfNotNull("couponCode", chargifySubscription.string("coupon_code"));
-            response.setIfNotNull("paymentCollectionMethod", chargifySubscription.string("payment_collection_method"));
-            response.setIfNotNull("productPriceInCents", chargifySubscription.string("product_price_in_cents"));
-            response.setIfNotNull("productVersionNumber", chargifySubscription.string("product_version_number"));
-            response.setIfNotNull("signupPaymentId", chargifySubscription.string("signup_payment_id"));
-            response.setIfNotNull("signupRevenue", chargifySubscription.string("signup_revenue"));
-            response.setIfNotNull("totalRevenueInCents", chargifySubscription.string("total_revenue_in_cents"));
-            response.setIfNotNull("trialStartedAt", chargifySubscription.string("trial_started_at"));
-            response.setIfNotNull("trialEndedAt", chargifySubscription.string("trial_ended_at"));
+            SUBSCRIPTION_FIELDS.toSlingr(chargifySubscription, response);
 
             response.setIfNotNull("canceled", chargifySubscription.bool("canceled", false));
         }
@@ -359,13 +483,9 @@ public class Convert {
     public static Json subscriptionToChargify(Json slingrSubscription) {
         final Json response = Json.map();
         if(slingrSubscription != null && !slingrSubscription.isEmpty()) {
-            response.setIfNotNull("id", slingrSubscription.string("chargifyId"));
-            response.setIfNotNull("state", slingrSubscription.string("state"));
-            response.setIfNotNull("previous_state", slingrSubscription.string("previousState"));
-            response.setIfNotNull("customer_id", slingrSubscription.string("customerId"));
-            response.setIfNotNull("payment_profile_id", slingrSubscription.string("paymentProfileId"));
-            response.setIfNotNull("product_handle", slingrSubscription.string("productHandle"));
-            response.setIfNotNull("cancellation_message", slingrSubscription.string("cancellationMessage"));
+            SUBSCRIPTION_HEAD_FIELDS.toChargify(slingrSubscription, response);
+            SUBSCRIPTION_REFERENCE_FIELDS.toChargify(slingrSubscription, response);
+            SUBSCRIPTION_FIELDS.toChargify(slingrSubscription, response);
         }
         return response;
     }
@@ -407,34 +527,24 @@ public class Convert {
     public static Json productToSlingr(Json chargifyProduct) {
         final Json response = Json.map();
         if(chargifyProduct != null && !chargifyProduct.isEmpty()) {
-            response.setIfNotNull("chargifyId", chargifyProduct.string("id"));
-            response.setIfNotNull("handle", chargifyProduct.string("handle"));
-            response.setIfNotNull("name", chargifyProduct.string("name"));
-            response.setIfNotNull("description", chargifyProduct.string("description"));
+            PRODUCT_HEAD_FIELDS.toSlingr(chargifyProduct, response);
             final Json family = Json.map();
             final Json productFamily = chargifyProduct.json("product_family");
-            if(!productFamily.isEmpty()) {
-                family.setIfNotNull("handle", productFamily.string("handle"));
-                family.setIfNotNull("name", productFamily.string("name"));
-                family.setIfNotNull("description", productFamily.string("description"));
+            if(productFamily != null && !productFamily.isEmpty()) {
+                PRODUCT_FAMILY_FIELDS.toSlingr(productFamily, family);
             }
             response.setIfNotNull("family", family);
-            response.setIfNotNull("intervalUnit", chargifyProduct.string("interval_unit"));
-            response.setIfNotNull("interval", chargifyProduct.string("interval"));
-            response.setIfNotNull("initialChargeInCents", chargifyProduct.string("initial_charge_in_cents"));
-            response.setIfNotNull("trialPriceInCents", chargifyProduct.string("trial_price_in_cents"));
-            response.setIfNotNull("trialInterval", chargifyProduct.string("trial_interval"));
-            response.setIfNotNull("trialIntervalUnit", chargifyProduct.string("trial_interval_unit"));
-            response.setIfNotNull("expirationInterval", chargifyProduct.string("expiration_interval"));
-            response.setIfNotNull("expirationIntervalUnit", chargifyProduct.string("expiration_interval_unit"));
-            response.setIfNotNull("versionNumber", chargifyProduct.string("version_number"));
-            response.setIfNotNull("createdAt", chargifyProduct.string("created_at"));
-            response.setIfNotNull("updatedAt", chargifyProduct.string("updated_at"));
-            response.setIfNotNull("archivedAt", chargifyProduct.string("archived_at"));
+            PRODUCT_FIELDS.toSlingr(chargifyProduct, response);
 
             response.setIfNotNull("removed", chargifyProduct.bool("removed", false));
         }
         return response;
     }
 
+    private static void setIfBlank(Json json, String key, String value) {
+        if(StringUtils.isBlank(json.string(key)) && StringUtils.isNotBlank(value)){
+            json.setIfNotNull(key, value);
+        }
+    }
+
 }
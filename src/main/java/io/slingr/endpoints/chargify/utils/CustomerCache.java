@@ -0,0 +1,104 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.utils.Json;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Cache of customers already converted to the SLINGR format, indexed by both the id on the
+ * application (Chargify reference) and the Chargify id.
+ *
+ * <p>Every eviction increases the version of the cache. A customer read from Chargify is only
+ * stored if no customer was evicted since the read started, so a read that overlaps with an
+ * update never puts the previous data back. Customers are copied when they are stored and when
+ * they are returned, so callers cannot modify the cached ones.
+ */
+public class CustomerCache {
+
+    private static final String REFERENCE_PREFIX = "reference:";
+    private static final String CHARGIFY_ID_PREFIX = "chargifyId:";
+
+    private final ExpiringCache<String, Json> cache;
+    private long version = 0;
+
+    public CustomerCache(int maxSize, long ttlSeconds) {
+        // every customer is stored under two keys
+        this(new ExpiringCache<>(maxSize * 2, ttlSeconds, TimeUnit.SECONDS));
+    }
+
+    CustomerCache(ExpiringCache<String, Json> cache) {
+        this.cache = cache;
+    }
+
+    public Json findByReference(String reference) {
+        return StringUtils.isBlank(reference) ? null : copy(cache.get(REFERENCE_PREFIX + reference));
+    }
+
+    public Json findByChargifyId(int chargifyId) {
+        return chargifyId < 1 ? null : copy(cache.get(CHARGIFY_ID_PREFIX + chargifyId));
+    }
+
+    /**
+     * Current version of the cache, taken before reading a customer from Chargify
+     */
+    public synchronized long version() {
+        return version;
+    }
+
+    /**
+     * Stores the customer read from Chargify, unless a customer was evicted after the given
+     * version was taken
+     */
+    public synchronized void put(Json customer, long readVersion) {
+        if (readVersion == version) {
+            put(customer);
+        }
+    }
+
+    /**
+     * Stores the customer, used with the customers returned by Chargify after an update
+     */
+    public synchronized void put(Json customer) {
+        if (customer == null || !cache.isEnabled()) {
+            return;
+        }
+        final Json copy = customer.cloneJson();
+        final String reference = copy.string("id");
+        final String chargifyId = copy.string("chargifyId");
+        if (StringUtils.isNotBlank(reference)) {
+            cache.put(REFERENCE_PREFIX + reference, copy);
+        }
+        if (StringUtils.isNotBlank(chargifyId)) {
+            cache.put(CHARGIFY_ID_PREFIX + chargifyId, copy);
+        }
+    }
+
+    /**
+     * Removes the customer from both indexes. Any of the keys can be empty, the other one is
+     * taken from the cached customer.
+     */
+    public synchronized void evict(String reference, String chargifyId) {
+        version++;
+        if (StringUtils.isNotBlank(chargifyId)) {
+            final Json customer = cache.remove(CHARGIFY_ID_PREFIX + chargifyId);
+            if (customer != null && StringUtils.isBlank(reference)) {
+                reference = customer.string("id");
+            }
+        }
+        if (StringUtils.isNotBlank(reference)) {
+            final Json customer = cache.remove(REFERENCE_PREFIX + reference);
+            if (customer != null && StringUtils.isNotBlank(customer.string("chargifyId"))) {
+                cache.remove(CHARGIFY_ID_PREFIX + customer.string("chargifyId"));
+            }
+        }
+    }
+
+    private static Json copy(Json customer) {
+        return customer != null ? customer.cloneJson() : null;
+    }
+
+    public Json stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,111 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.utils.Json;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>Small in-memory LRU cache with a time to live for its entries. A cache with size or time to
+ * live lower than 1 is disabled: it does not keep anything and every lookup is a miss.
+ */
+public class ExpiringCache<K, V> {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final LinkedHashMap<K, Entry<V>> entries;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public ExpiringCache(int maxSize, long ttl, TimeUnit unit) {
+        this(maxSize, ttl, unit, System::nanoTime);
+    }
+
+    ExpiringCache(int maxSize, long ttl, TimeUnit unit, LongSupplier clock) {
+        this.maxSize = maxSize;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.clock = clock;
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > ExpiringCache.this.maxSize) {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public boolean isEnabled() {
+        return maxSize > 0 && ttlNanos > 0;
+    }
+
+    public synchronized V get(K key) {
+        final Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        if (clock.getAsLong() - entry.created > ttlNanos) {
+            entries.remove(key);
+            expirations.incrementAndGet();
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return entry.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        if (isEnabled() && key != null && value != null) {
+            entries.put(key, new Entry<>(value, clock.getAsLong()));
+        }
+    }
+
+    public synchronized V remove(K key) {
+        final Entry<V> entry = entries.remove(key);
+        if (entry == null) {
+            return null;
+        }
+        evictions.incrementAndGet();
+        return entry.value;
+    }
+
+    public synchronized void clear() {
+        evictions.addAndGet(entries.size());
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public Json stats() {
+        return Json.map()
+                .set("size", size())
+                .set("maxSize", maxSize)
+                .set("ttlSeconds", TimeUnit.NANOSECONDS.toSeconds(ttlNanos))
+                .set("hits", hits.get())
+                .set("misses", misses.get())
+                .set("evictions", evictions.get())
+                .set("expirations", expirations.get());
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long created;
+
+        private Entry(V value, long created) {
+            this.value = value;
+            this.created = created;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.utils.Json;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>Table of fields that are copied as they are between the SLINGR and Chargify formats of a
+ * resource. Tables are built once and then used by the converters on every call.
+ */
+public class FieldMapping {
+
+    private final String[] slingrKeys;
+    private final String[] chargifyKeys;
+    private final boolean[] toSlingr;
+    private final boolean[] toChargify;
+
+    private FieldMapping(List<String[]> fields, List<boolean[]> directions) {
+        final int size = fields.size();
+        slingrKeys = new String[size];
+        chargifyKeys = new String[size];
+        toSlingr = new boolean[size];
+        toChargify = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            slingrKeys[i] = fields.get(i)[0];
+            chargifyKeys[i] = fields.get(i)[1];
+            toSlingr[i] = directions.get(i)[0];
+            toChargify[i] = directions.get(i)[1];
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Copies the non-null fields of the Chargify resource to the given SLINGR resource
+     */
+    public Json toSlingr(Json chargify, Json slingr) {
+        for (int i = 0; i < slingrKeys.length; i++) {
+            if (toSlingr[i]) {
+                slingr.setIfNotNull(slingrKeys[i], chargify.string(chargifyKeys[i]));
+            }
+        }
+        return slingr;
+    }
+
+    /**
+     * Copies the non-null fields of the SLINGR resource to the given Chargify resource
+     */
+    public Json toChargify(Json slingr, Json chargify) {
+        for (int i = 0; i < chargifyKeys.length; i++) {
+            if (toChargify[i]) {
+                chargify.setIfNotNull(chargifyKeys[i], slingr.string(slingrKeys[i]));
+            }
+        }
+        return chargify;
+    }
+
+    public static class Builder {
+        private final List<String[]> fields = new ArrayList<>();
+        private final List<boolean[]> directions = new ArrayList<>();
+
+        private Builder() {
+        }
+
+        /**
+         * Field copied in both directions
+         */
+        public Builder field(String slingrKey, String chargifyKey) {
+            return add(slingrKey, chargifyKey, true, true);
+        }
+
+        /**
+         * Field only returned by Chargify
+         */
+        public Builder fromChargify(String slingrKey, String chargifyKey) {
+            return add(slingrKey, chargifyKey, true, false);
+        }
+
+        /**
+         * Field only sent to Chargify
+         */
+        public Builder toChargify(String slingrKey, String chargifyKey) {
+            return add(slingrKey, chargifyKey, false, true);
+        }
+
+        private Builder add(String slingrKey, String chargifyKey, boolean toSlingr, boolean toChargify) {
+            fields.add(new String[]{slingrKey, chargifyKey});
+            directions.add(new boolean[]{toSlingr, toChargify});
+            return this;
+        }
+
+        public FieldMapping build() {
+            return new FieldMapping(fields, directions);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.utils.Json;
+
+/**
+ * <p>Set of the ids of resources known to exist on Chargify, kept in a primitive open addressing
+ * table that grows as needed. The index is complete once all the resources were loaded, before
+ * that an id that is not on the index can still exist.
+ */
+public class IdIndex {
+
+    private static final int EMPTY = 0;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private int[] table = new int[INITIAL_CAPACITY];
+    private int mask = INITIAL_CAPACITY - 1;
+    private int size = 0;
+    private volatile boolean complete = false;
+
+    /**
+     * Adds the id to the index. Ids lower than 1 are ignored.
+     */
+    public synchronized void add(int id) {
+        if (id <= EMPTY) {
+            return;
+        }
+        int i = slot(id);
+        while (table[i] != EMPTY) {
+            if (table[i] == id) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        table[i] = id;
+        size++;
+        // load factor of the table is kept under 0.5
+        if (size * 2 > table.length) {
+            resize();
+        }
+    }
+
+    public synchronized boolean contains(int id) {
+        if (id <= EMPTY) {
+            return false;
+        }
+        for (int i = slot(id); table[i] != EMPTY; i = (i + 1) & mask) {
+            if (table[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public synchronized void remove(int id) {
+        if (id <= EMPTY) {
+            return;
+        }
+        int i = slot(id);
+        while (table[i] != id) {
+            if (table[i] == EMPTY) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        // backward shift of the following entries of the cluster
+        int gap = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (table[j] == EMPTY) {
+                break;
+            }
+            final int home = slot(table[j]);
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                table[gap] = table[j];
+                gap = j;
+            }
+        }
+        table[gap] = EMPTY;
+        size--;
+    }
+
+    /**
+     * Returns false only when the index is complete and the id is not on it
+     */
+    public boolean mayExist(int id) {
+        return !complete || contains(id);
+    }
+
+    public void markComplete() {
+        complete = true;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    private int slot(int id) {
+        final int hash = id * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+
+    private void resize() {
+        final int[] previous = table;
+        table = new int[previous.length * 2];
+        mask = table.length - 1;
+        for (int id : previous) {
+            if (id != EMPTY) {
+                int i = slot(id);
+                while (table[i] != EMPTY) {
+                    i = (i + 1) & mask;
+                }
+                table[i] = id;
+            }
+        }
+    }
+
+    public Json stats() {
+        return Json.map()
+                .set("size", size())
+                .set("complete", complete);
+    }
+}
@@ -0,0 +1,186 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.services.datastores.DataStore;
+import io.slingr.endpoints.utils.Json;
+import io.slingr.endpoints.utils.Strings;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>Results of the creations already sent to Chargify, indexed by the uniqueness token used on
+ * the request. The token is derived from the idempotency key given by the app, so a call retried
+ * with the same key gets the same token and the stored result is returned without sending the
+ * request again. Calls without key always get a new token and are never deduplicated.
+ *
+ * <p>Results are saved on the data store of the endpoint, so they survive restarts, and the latest
+ * ones are also kept in memory. Expired results are removed from the data store at most once per
+ * purge interval, when a new result is saved. A store with a time to live lower than 1 is disabled.
+ */
+public class IdempotencyStore {
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    private static final String TOKEN = "token";
+    private static final String RESULT = "result";
+    private static final String EXPIRES_AT = "expiresAt";
+    private static final long PURGE_INTERVAL_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final DataStore dataStore;
+    private final long ttlMillis;
+    private final ExpiringCache<String, Json> recent;
+    private final LongSupplier clock;
+    private long lastPurge;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong saved = new AtomicLong();
+    private final AtomicLong purged = new AtomicLong();
+
+    public IdempotencyStore(DataStore dataStore, int memorySize, long ttlSeconds) {
+        this(dataStore, memorySize, ttlSeconds, System::currentTimeMillis);
+    }
+
+    /**
+     * The clock returns the current time in milliseconds
+     */
+    IdempotencyStore(DataStore dataStore, int memorySize, long ttlSeconds, LongSupplier clock) {
+        this.dataStore = dataStore;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.clock = clock;
+        this.recent = new ExpiringCache<>(memorySize, ttlSeconds, TimeUnit.SECONDS,
+                () -> TimeUnit.MILLISECONDS.toNanos(clock.getAsLong()));
+        this.lastPurge = clock.getAsLong();
+    }
+
+    public boolean isEnabled() {
+        return ttlMillis > 0;
+    }
+
+    /**
+     * Uniqueness token of a request. The same key always generates the same token for the same
+     * wrapper, while a random token is returned when there is no key.
+     */
+    public String token(String wrapper, String idempotencyKey) {
+        if (StringUtils.isBlank(idempotencyKey)) {
+            return Strings.randomUUID();
+        }
+        final String seed = String.format("%s:key:%s", wrapper, idempotencyKey);
+        return UUID.nameUUIDFromBytes(seed.getBytes(StandardCharsets.UTF_8)).toString();
+    }
+
+    /**
+     * Result stored for the token, or null when the request was not sent yet or the result
+     * already expired
+     */
+    public Json find(String token) {
+        if (!isEnabled() || StringUtils.isBlank(token)) {
+            return null;
+        }
+        Json result = recent.get(token);
+        if (result == null) {
+            result = findStored(token);
+        }
+        if (result == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        return result.cloneJson();
+    }
+
+    private Json findStored(String token) {
+        final Json document;
+        try {
+            document = dataStore != null ? dataStore.findOne(Json.map().set(TOKEN, token)) : null;
+        } catch (Exception ex) {
+            logger.warn("Error reading the idempotency store: {}", ex.getMessage());
+            return null;
+        }
+        if (document == null) {
+            return null;
+        }
+        final Long expiresAt = document.longInteger(EXPIRES_AT);
+        if (expiresAt == null || expiresAt < clock.getAsLong()) {
+            remove(document);
+            return null;
+        }
+        final Json result = document.json(RESULT);
+        if (result != null) {
+            recent.put(token, result);
+        }
+        return result;
+    }
+
+    public void save(String token, Json result) {
+        if (!isEnabled() || StringUtils.isBlank(token) || result == null) {
+            return;
+        }
+        final Json copy = result.cloneJson();
+        recent.put(token, copy);
+        saved.incrementAndGet();
+        if (dataStore == null) {
+            return;
+        }
+        final long now = clock.getAsLong();
+        try {
+            dataStore.save(Json.map()
+                    .set(TOKEN, token)
+                    .set(RESULT, copy)
+                    .set(EXPIRES_AT, now + ttlMillis));
+        } catch (Exception ex) {
+            // the result is still kept in memory
+            logger.warn("Error saving on the idempotency store: {}", ex.getMessage());
+        }
+        if (isPurgeDue(now)) {
+            purge(now);
+        }
+    }
+
+    private synchronized boolean isPurgeDue(long now) {
+        if (now - lastPurge < PURGE_INTERVAL_MILLIS) {
+            return false;
+        }
+        lastPurge = now;
+        return true;
+    }
+
+    /**
+     * Removes from the data store the results expired before the given time
+     */
+    private void purge(long now) {
+        try {
+            final int removed = dataStore.remove(Json.map().set(EXPIRES_AT, Json.map().set("$lt", now)));
+            purged.addAndGet(removed);
+            if (removed > 0) {
+                logger.info("Removed [{}] expired results from the idempotency store", removed);
+            }
+        } catch (Exception ex) {
+            logger.warn("Error removing expired results from the idempotency store: {}", ex.getMessage());
+        }
+    }
+
+    private void remove(Json document) {
+        try {
+            dataStore.removeById(document.string("_id"));
+        } catch (Exception ex) {
+            logger.debug("Error removing expired token from the idempotency store: {}", ex.getMessage());
+        }
+    }
+
+    public Json stats() {
+        return Json.map()
+                .set("enabled", isEnabled())
+                .set("ttlSeconds", TimeUnit.MILLISECONDS.toSeconds(ttlMillis))
+                .set("hits", hits.get())
+                .set("misses", misses.get())
+                .set("saved", saved.get())
+                .set("purged", purged.get())
+                .set("memory", recent.stats());
+    }
+}
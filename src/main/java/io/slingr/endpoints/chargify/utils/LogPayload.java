@@ -0,0 +1,97 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.utils.Json;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * <p>Wrapper used to log resources. The resource is only serialized when the message is really
+ * written (the wrapper is passed as a parameter of the logger), and the card and bank numbers of
+ * both the SLINGR and Chargify formats are masked while serializing.
+ */
+public class LogPayload {
+
+    private static final Set<String> SENSITIVE_FIELDS = new HashSet<>(Arrays.asList(
+            // Chargify format
+            "full_number", "cvv", "bank_account_number", "bank_routing_number",
+            // SLINGR format
+            "creditCardNumber", "originalCreditCardNumber", "code", "bankAccountNumber", "bankRoutingNumber"
+    ));
+    private static final int VISIBLE_CHARACTERS = 4;
+
+    private final Json json;
+
+    private LogPayload(Json json) {
+        this.json = json;
+    }
+
+    public static LogPayload masked(Json json) {
+        return new LogPayload(json);
+    }
+
+    @Override
+    public String toString() {
+        if (json == null) {
+            return "null";
+        }
+        final StringBuilder sb = new StringBuilder(256);
+        append(sb, null, json.isList() ? json.toList() : json.toMap());
+        return sb.toString();
+    }
+
+    private static void append(StringBuilder sb, String key, Object value) {
+        if (value instanceof Json) {
+            final Json json = (Json) value;
+            value = json.isList() ? json.toList() : json.toMap();
+        }
+        if (value instanceof Map) {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                final String childKey = String.valueOf(entry.getKey());
+                sb.append('"').append(childKey).append("\":");
+                append(sb, childKey, entry.getValue());
+            }
+            sb.append('}');
+        } else if (value instanceof List) {
+            sb.append('[');
+            boolean first = true;
+            for (Object item : (List<?>) value) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                append(sb, key, item);
+            }
+            sb.append(']');
+        } else if (value instanceof String) {
+            sb.append('"');
+            if (key != null && SENSITIVE_FIELDS.contains(key)) {
+                mask(sb, (String) value);
+            } else {
+                sb.append((String) value);
+            }
+            sb.append('"');
+        } else if (value != null && key != null && SENSITIVE_FIELDS.contains(key)) {
+            mask(sb, String.valueOf(value));
+        } else {
+            sb.append(value);
+        }
+    }
+
+    private static void mask(StringBuilder sb, String value) {
+        final int visible = value.length() > VISIBLE_CHARACTERS * 2 ? VISIBLE_CHARACTERS : 0;
+        for (int i = 0; i < value.length() - visible; i++) {
+            sb.append('*');
+        }
+        sb.append(value, value.length() - visible, value.length());
+    }
+}
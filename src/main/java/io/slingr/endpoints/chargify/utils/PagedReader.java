@@ -0,0 +1,77 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.exceptions.EndpointException;
+import io.slingr.endpoints.exceptions.ErrorCode;
+import io.slingr.endpoints.utils.Json;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * <p>Walks the pages of a Chargify list resource. While the current page is being consumed
+ * the next one is already requested, so only two pages are kept in memory at any time.
+ */
+public class PagedReader {
+
+    public static final int DEFAULT_PER_PAGE = 50;
+    public static final int MAX_PER_PAGE = 200;
+
+    public interface PageFetcher {
+        List<Json> fetch(int page, int perPage);
+    }
+
+    public interface PageConsumer {
+        void accept(int page, List<Json> items, boolean last);
+    }
+
+    private final ExecutorService executor;
+    private final PageFetcher fetcher;
+    private final int perPage;
+
+    public PagedReader(ExecutorService executor, int perPage, PageFetcher fetcher) {
+        this.executor = executor;
+        this.fetcher = fetcher;
+        this.perPage = perPage < 1 ? DEFAULT_PER_PAGE : Math.min(perPage, MAX_PER_PAGE);
+    }
+
+    public int getPerPage() {
+        return perPage;
+    }
+
+    public void read(int firstPage, PageConsumer consumer) {
+        int page = Math.max(1, firstPage);
+        Future<List<Json>> next = prefetch(page);
+        while (true) {
+            final List<Json> items = await(next);
+            final boolean last = items.size() < perPage;
+            if (!last) {
+                next = prefetch(page + 1);
+            }
+            consumer.accept(page, items, last);
+            if (last) {
+                return;
+            }
+            page++;
+        }
+    }
+
+    private Future<List<Json>> prefetch(int page) {
+        return executor.submit(() -> fetcher.fetch(page, perPage));
+    }
+
+    private List<Json> await(Future<List<Json>> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof EndpointException) {
+                throw (EndpointException) ex.getCause();
+            }
+            throw EndpointException.permanent(ErrorCode.API, String.format("Error reading page: %s", ex.getCause().getMessage()));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw EndpointException.permanent(ErrorCode.API, "Interrupted while reading pages");
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.utils.Json;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * <p>In-memory catalog of the products of the site, already converted to the SLINGR format and
+ * indexed by handle and by product family. The catalog is loaded when the endpoint starts and
+ * reloaded in background periodically; every load builds a new snapshot that replaces the previous
+ * one, so lookups never wait for a refresh. Lookups return copies of the products, so callers
+ * can modify them without changing the catalog.
+ */
+public class ProductCatalog {
+    private static final Logger logger = LoggerFactory.getLogger(ProductCatalog.class);
+
+    private final Supplier<List<Json>> loader;
+    private final long refreshSeconds;
+    private final ScheduledExecutorService refresher;
+
+    private volatile Snapshot snapshot = null;
+
+    private final AtomicLong refreshes = new AtomicLong();
+    private final AtomicLong failedRefreshes = new AtomicLong();
+
+    /**
+     * The loader returns the products in the Chargify format
+     */
+    public ProductCatalog(Supplier<List<Json>> loader, long refreshSeconds) {
+        this.loader = loader;
+        this.refreshSeconds = refreshSeconds;
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "chargify-products");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Loads the catalog in background and schedules the next refreshes
+     */
+    public void start() {
+        refresher.scheduleWithFixedDelay(this::refresh, 0, refreshSeconds, TimeUnit.SECONDS);
+    }
+
+    public void stop() {
+        refresher.shutdownNow();
+    }
+
+    public void refresh() {
+        final long start = System.nanoTime();
+        try {
+            final Snapshot loaded = new Snapshot(loader.get());
+            snapshot = loaded;
+            refreshes.incrementAndGet();
+            logger.info("Product catalog loaded: [{}] products - [{}] families - [{}] ms", loaded.products.size(),
+                    loaded.byFamily.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception ex) {
+            // the previous snapshot is kept
+            failedRefreshes.incrementAndGet();
+            logger.warn("Error loading the product catalog: {}", ex.getMessage());
+        }
+    }
+
+    /**
+     * Copy of the product with the given handle, or null if the catalog was not loaded or the
+     * product does not exist
+     */
+    public Json findByHandle(String handle) {
+        final Snapshot current = snapshot;
+        final Json product = current == null || handle == null ? null : current.byHandle.get(handle);
+        return product != null ? product.cloneJson() : null;
+    }
+
+    /**
+     * Returns true if the catalog is not loaded yet or the product exists. A product that is not
+     * on the catalog could have been created after the last refresh, so a miss has to be confirmed
+     * by Chargify.
+     */
+    public boolean mayExist(String handle) {
+        final Snapshot current = snapshot;
+        return current == null || current.byHandle.containsKey(handle);
+    }
+
+    /**
+     * Copies of the products of the catalog, all of them when the family handle is empty
+     */
+    public List<Json> list(String familyHandle) {
+        final Snapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        final List<Json> products = StringUtils.isBlank(familyHandle) ? current.products : current.byFamily.get(familyHandle);
+        if (products == null) {
+            return Collections.emptyList();
+        }
+        final List<Json> copies = new ArrayList<>(products.size());
+        for (Json product : products) {
+            copies.add(product.cloneJson());
+        }
+        return copies;
+    }
+
+    public Json stats() {
+        final Snapshot current = snapshot;
+        return Json.map()
+                .set("loaded", current != null)
+                .set("products", current != null ? current.products.size() : 0)
+                .set("families", current != null ? current.byFamily.size() : 0)
+                .set("ageSeconds", current != null ? TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - current.loadedAt) : -1)
+                .set("refreshSeconds", refreshSeconds)
+                .set("refreshes", refreshes.get())
+                .set("failedRefreshes", failedRefreshes.get());
+    }
+
+    private static class Snapshot {
+        private final List<Json> products;
+        private final Map<String, Json> byHandle;
+        private final Map<String, List<Json>> byFamily;
+        private final long loadedAt = System.nanoTime();
+
+        private Snapshot(List<Json> chargifyProducts) {
+            final List<Json> products = new ArrayList<>(chargifyProducts.size());
+            final Map<String, Json> byHandle = new HashMap<>(chargifyProducts.size() * 2);
+            final Map<String, List<Json>> byFamily = new HashMap<>();
+            for (Json chargifyProduct : chargifyProducts) {
+                final Json product = Convert.productToSlingr(chargifyProduct);
+                products.add(product);
+                final String handle = product.string("handle");
+                if (StringUtils.isNotBlank(handle)) {
+                    byHandle.put(handle, product);
+                }
+                final String familyHandle = product.json("family") != null ? product.json("family").string("handle") : null;
+                if (StringUtils.isNotBlank(familyHandle)) {
+                    byFamily.computeIfAbsent(familyHandle, key -> new ArrayList<>()).add(product);
+                }
+            }
+            this.products = Collections.unmodifiableList(products);
+            this.byHandle = byHandle;
+            this.byFamily = byFamily;
+        }
+    }
+}
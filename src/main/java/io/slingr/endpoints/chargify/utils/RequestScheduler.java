@@ -0,0 +1,193 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.exceptions.EndpointException;
+import io.slingr.endpoints.exceptions.ErrorCode;
+import io.slingr.endpoints.utils.Json;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * <p>Scheduler for the requests sent to Chargify. Requests wait on a token bucket (in arrival
+ * order) instead of failing when the allowed rate is exceeded, and requests rejected by
+ * Chargify with a 429 code are retried after the 'Retry-After' delay (plus jitter).
+ */
+public class RequestScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(RequestScheduler.class);
+
+    private static final String TOO_MANY_REQUESTS = "HTTP 429 Too Many Requests";
+    private static final long DEFAULT_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 60000;
+
+    /**
+     * Waits for the given nanoseconds, replaced by the tests
+     */
+    interface Sleeper {
+        void sleep(long nanos) throws InterruptedException;
+    }
+
+    private final double permitsPerNano;
+    private final double burst;
+    private final int maxRetries;
+    private final LongSupplier clock;
+    private final Sleeper sleeper;
+
+    // fair lock: waiting requests are served in arrival order
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private double tokens;
+    private long lastRefill;
+    private volatile long pausedUntil;
+
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+
+    public RequestScheduler(double requestsPerSecond, int burst, int maxRetries) {
+        this(requestsPerSecond, burst, maxRetries, System::nanoTime, TimeUnit.NANOSECONDS::sleep);
+    }
+
+    RequestScheduler(double requestsPerSecond, int burst, int maxRetries, LongSupplier clock, Sleeper sleeper) {
+        if (requestsPerSecond <= 0) {
+            throw new IllegalArgumentException(String.format("Invalid requests per second [%s]", requestsPerSecond));
+        }
+        this.permitsPerNano = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = Math.max(1, burst);
+        this.maxRetries = Math.max(0, maxRetries);
+        this.clock = clock;
+        this.sleeper = sleeper;
+        this.tokens = this.burst;
+        this.lastRefill = clock.getAsLong();
+    }
+
+    /**
+     * Executes the given call when a token is available. When Chargify answers with a 429 code
+     * all the requests are paused and the call is queued again, up to the configured retries.
+     */
+    public <T> T execute(Supplier<T> call) {
+        int attempt = 0;
+        while (true) {
+            acquire();
+            try {
+                return call.get();
+            } catch (EndpointException ex) {
+                if (!isTooManyRequests(ex)) {
+                    throw ex;
+                }
+                throttled.incrementAndGet();
+                if (attempt >= maxRetries) {
+                    throw ex;
+                }
+                retries.incrementAndGet();
+                final long delay = backoffMillis(ex, attempt);
+                logger.info("Chargify rate limit reached, retrying in [{}] ms (attempt [{}])", delay, attempt + 1);
+                pause(delay);
+                attempt++;
+            }
+        }
+    }
+
+    private void acquire() {
+        final long start = clock.getAsLong();
+        final int depth = queueDepth.incrementAndGet();
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+        try {
+            lock.lockInterruptibly();
+            try {
+                while (true) {
+                    final long now = clock.getAsLong();
+                    final long paused = pausedUntil - now;
+                    if (paused > 0) {
+                        sleeper.sleep(paused);
+                        continue;
+                    }
+                    tokens = Math.min(burst, tokens + (now - lastRefill) * permitsPerNano);
+                    lastRefill = now;
+                    if (tokens >= 1) {
+                        tokens -= 1;
+                        break;
+                    }
+                    sleeper.sleep((long) Math.ceil((1 - tokens) / permitsPerNano));
+                }
+            } finally {
+                lock.unlock();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw EndpointException.permanent(ErrorCode.API, "Interrupted while waiting to send the request to Chargify");
+        } finally {
+            queueDepth.decrementAndGet();
+        }
+        final long waited = clock.getAsLong() - start;
+        requests.incrementAndGet();
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+    }
+
+    private void pause(long millis) {
+        final long until = clock.getAsLong() + TimeUnit.MILLISECONDS.toNanos(millis);
+        synchronized (this) {
+            if (until > pausedUntil) {
+                pausedUntil = until;
+            }
+        }
+    }
+
+    private static boolean isTooManyRequests(EndpointException ex) {
+        return ex.getReturnCode() == 429 || TOO_MANY_REQUESTS.equalsIgnoreCase(ex.getMessage());
+    }
+
+    private static long backoffMillis(EndpointException ex, int attempt) {
+        long delay = retryAfterMillis(ex.getAdditionalInfo());
+        if (delay < 0) {
+            delay = Math.min(MAX_BACKOFF_MILLIS, DEFAULT_BACKOFF_MILLIS << Math.min(attempt, 16));
+        }
+        // jitter: up to 25% over the delay, so paused requests do not come back all at once
+        return delay + ThreadLocalRandom.current().nextLong(delay / 4 + 1);
+    }
+
+    private static long retryAfterMillis(Json info) {
+        final Json headers = info != null ? info.json("headers") : null;
+        if (headers == null) {
+            return -1;
+        }
+        String value = null;
+        for (String header : headers.keys()) {
+            if ("Retry-After".equalsIgnoreCase(header)) {
+                value = headers.string(header);
+            }
+        }
+        if (StringUtils.isBlank(value)) {
+            return -1;
+        }
+        try {
+            return Math.min(MAX_BACKOFF_MILLIS, TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim())));
+        } catch (NumberFormatException nfe) {
+            return -1;
+        }
+    }
+
+    public Json stats() {
+        final long count = requests.get();
+        return Json.map()
+                .set("requests", count)
+                .set("queueDepth", queueDepth.get())
+                .set("maxQueueDepth", maxQueueDepth.get())
+                .set("totalWaitMillis", TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get()))
+                .set("averageWaitMillis", count > 0 ? TimeUnit.NANOSECONDS.toMillis(totalWaitNanos.get() / count) : 0)
+                .set("maxWaitMillis", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()))
+                .set("throttled", throttled.get())
+                .set("retries", retries.get());
+    }
+}
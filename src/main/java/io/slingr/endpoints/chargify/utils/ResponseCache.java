@@ -0,0 +1,109 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.utils.Json;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Cache of the responses of GET requests, with a time to live for each path prefix configured
+ * like <code>invoices=60,statements=300</code>. Only the paths starting with one of the prefixes
+ * are cached, using the time to live of the longest prefix that matches.
+ *
+ * <p>Responses are copied when they are stored and when they are returned, so callers cannot
+ * modify the cached ones.
+ *
+ * <p>The key of a response must include every option of the request that changes it, not only the
+ * path and the query parameters.
+ */
+public class ResponseCache {
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCache.class);
+
+    private final List<Rule> rules;
+
+    /**
+     * The maximum size applies to the responses of each prefix
+     */
+    public ResponseCache(String ttls, int maxSize) {
+        this.rules = parse(ttls, maxSize);
+    }
+
+    private static List<Rule> parse(String ttls, int maxSize) {
+        final List<Rule> rules = new ArrayList<>();
+        if (StringUtils.isBlank(ttls) || maxSize < 1) {
+            return rules;
+        }
+        for (String entry : ttls.split(",")) {
+            final String[] parts = entry.split("=");
+            final String prefix = parts.length == 2 ? normalize(parts[0]) : "";
+            final int ttl = parts.length == 2 ? Convert.toInt(parts[1], -1) : -1;
+            if (prefix.isEmpty() || ttl < 1) {
+                logger.warn("Invalid TTL of the response cache [{}], it is ignored", entry.trim());
+                continue;
+            }
+            rules.add(new Rule(prefix, new ExpiringCache<>(maxSize, ttl, TimeUnit.SECONDS)));
+        }
+        rules.sort(Comparator.comparingInt((Rule rule) -> rule.prefix.length()).reversed());
+        return rules;
+    }
+
+    private static String normalize(String path) {
+        return StringUtils.removeStart(path.trim(), "/");
+    }
+
+    public boolean isEnabled() {
+        return !rules.isEmpty();
+    }
+
+    /**
+     * Cached response of the request, or null if the path is not cached or the response expired
+     */
+    public Json get(String path, String key) {
+        final Rule rule = rule(path);
+        final Json response = rule != null ? rule.responses.get(key) : null;
+        return response != null ? response.cloneJson() : null;
+    }
+
+    public void put(String path, String key, Json response) {
+        final Rule rule = rule(path);
+        if (rule != null && response != null) {
+            rule.responses.put(key, response.cloneJson());
+        }
+    }
+
+    private Rule rule(String path) {
+        if (path == null || rules.isEmpty()) {
+            return null;
+        }
+        final String normalized = normalize(path);
+        for (Rule rule : rules) {
+            if (normalized.startsWith(rule.prefix)) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    public Json stats() {
+        final Json stats = Json.map();
+        for (Rule rule : rules) {
+            stats.set(rule.prefix, rule.responses.stats());
+        }
+        return stats;
+    }
+
+    private static class Rule {
+        private final String prefix;
+        private final ExpiringCache<String, Json> responses;
+
+        private Rule(String prefix, ExpiringCache<String, Json> responses) {
+            this.prefix = prefix;
+            this.responses = responses;
+        }
+    }
+}
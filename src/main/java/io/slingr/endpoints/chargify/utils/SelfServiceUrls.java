@@ -0,0 +1,83 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.exceptions.EndpointException;
+import io.slingr.endpoints.exceptions.ErrorCode;
+import io.slingr.endpoints.utils.Json;
+import org.apache.commons.lang3.StringUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * <p>Generator of the URLs of the Self-Service pages hosted by Chargify. The token of a page is
+ * the beginning of the SHA-1 of the page type, the Chargify id and the site shared key, so the
+ * URL of an id never changes and the latest ones are kept in memory.
+ */
+public class SelfServiceUrls {
+
+    public static final String UPDATE_PAYMENT = "update_payment";
+
+    private static final Pattern PAGE_TYPE = Pattern.compile("[a-z_]+");
+    private static final int TOKEN_BYTES = 5;
+    private static final long CACHE_TTL_HOURS = 24;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private static final ThreadLocal<MessageDigest> SHA1 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException("SHA-1 is not available", ex);
+        }
+    });
+
+    private final String baseUrl;
+    private final String siteSharedKey;
+    private final ExpiringCache<String, String> urls;
+
+    public SelfServiceUrls(String subdomain, String siteSharedKey, int cacheSize) {
+        this.baseUrl = String.format("https://%s.chargify.com/", subdomain);
+        this.siteSharedKey = siteSharedKey;
+        this.urls = new ExpiringCache<>(cacheSize, CACHE_TTL_HOURS, TimeUnit.HOURS);
+    }
+
+    /**
+     * Page type of the URLs, 'update_payment' when it is empty
+     */
+    public static String checkPageType(String pageType) throws EndpointException {
+        if (StringUtils.isBlank(pageType)) {
+            return UPDATE_PAYMENT;
+        }
+        if (!PAGE_TYPE.matcher(pageType).matches()) {
+            throw EndpointException.permanent(ErrorCode.ARGUMENT, String.format("Invalid page type [%s]", pageType));
+        }
+        return pageType;
+    }
+
+    public String url(String pageType, String chargifyId) {
+        final String key = pageType + "/" + chargifyId;
+        String url = urls.get(key);
+        if (url == null) {
+            url = baseUrl + key + "/" + token(pageType, chargifyId);
+            urls.put(key, url);
+        }
+        return url;
+    }
+
+    private String token(String pageType, String chargifyId) {
+        final MessageDigest digest = SHA1.get();
+        final byte[] hash = digest.digest((pageType + "--" + chargifyId + "--" + siteSharedKey).getBytes(StandardCharsets.UTF_8));
+        final char[] token = new char[TOKEN_BYTES * 2];
+        for (int i = 0; i < TOKEN_BYTES; i++) {
+            token[i * 2] = HEX[(hash[i] >> 4) & 0xf];
+            token[i * 2 + 1] = HEX[hash[i] & 0xf];
+        }
+        return new String(token);
+    }
+
+    public Json stats() {
+        return urls.stats();
+    }
+}
@@ -0,0 +1,84 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.utils.Json;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * <p>Coalesces concurrent identical calls: while the call of a key is in flight, later calls with
+ * the same key wait for it and get its result (or its error) instead of executing it again. The
+ * key is released as soon as the call finishes, so results are never reused after that.
+ *
+ * <p>Mutable results are shared through the given copier, so every caller gets its own instance.
+ */
+public class SingleFlight<V> {
+
+    private final ConcurrentMap<String, CompletableFuture<V>> calls = new ConcurrentHashMap<>();
+    private final UnaryOperator<V> copier;
+
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * Results are shared as they are, for immutable values
+     */
+    public SingleFlight() {
+        this(UnaryOperator.identity());
+    }
+
+    /**
+     * Callers waiting for a call in flight get a copy of its result
+     */
+    public SingleFlight(UnaryOperator<V> copier) {
+        this.copier = copier;
+    }
+
+    public V execute(String key, Supplier<V> call) {
+        final CompletableFuture<V> future = new CompletableFuture<>();
+        final CompletableFuture<V> inFlight = calls.putIfAbsent(key, future);
+        if (inFlight != null) {
+            coalesced.incrementAndGet();
+            final V result = await(inFlight);
+            return result != null ? copier.apply(result) : null;
+        }
+        executed.incrementAndGet();
+        try {
+            final V result = call.get();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error ex) {
+            future.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            calls.remove(key, future);
+        }
+    }
+
+    private V await(CompletableFuture<V> inFlight) {
+        try {
+            return inFlight.join();
+        } catch (CompletionException ex) {
+            // the same exception thrown to the caller that executed the call
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            if (ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    public Json stats() {
+        return Json.map()
+                .set("inFlight", calls.size())
+                .set("executed", executed.get())
+                .set("coalesced", coalesced.get());
+    }
+}
@@ -0,0 +1,81 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.utils.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * <p>Phases executed in order when the endpoint starts, before reporting it as ready. The time
+ * taken by each phase is logged and kept for the metrics. A failed phase is logged and the next
+ * ones are executed anyway, the endpoint is ready when all of them finished.
+ */
+public class WarmUp {
+    private static final Logger logger = LoggerFactory.getLogger(WarmUp.class);
+
+    public interface Phase {
+        void run() throws Exception;
+    }
+
+    private final Map<String, Phase> phases = new LinkedHashMap<>();
+    private final Map<String, Long> timings = new LinkedHashMap<>();
+    private volatile boolean ready = false;
+    private volatile long totalMillis = -1;
+
+    public WarmUp phase(String name, Phase phase) {
+        phases.put(name, phase);
+        return this;
+    }
+
+    public void run() {
+        final long start = System.nanoTime();
+        for (Map.Entry<String, Phase> phase : phases.entrySet()) {
+            final long phaseStart = System.nanoTime();
+            try {
+                phase.getValue().run();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                logger.info("Warm-up interrupted on phase [{}]", phase.getKey());
+                return;
+            } catch (Exception ex) {
+                logger.warn("Warm-up phase [{}] failed: {}", phase.getKey(), ex.getMessage());
+            }
+            final long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - phaseStart);
+            synchronized (timings) {
+                timings.put(phase.getKey(), millis);
+            }
+            logger.info("Warm-up phase [{}] finished in [{}] ms", phase.getKey(), millis);
+        }
+        totalMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        ready = true;
+        logger.info("Warm-up finished in [{}] ms, endpoint is ready", totalMillis);
+    }
+
+    /**
+     * Skips the phases, used when the warm-up is disabled
+     */
+    public void skip() {
+        totalMillis = 0;
+        ready = true;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public Json stats() {
+        final Json phaseTimings = Json.map();
+        synchronized (timings) {
+            for (Map.Entry<String, Long> timing : timings.entrySet()) {
+                phaseTimings.set(timing.getKey(), timing.getValue());
+            }
+        }
+        return Json.map()
+                .set("ready", ready)
+                .set("totalMillis", totalMillis)
+                .set("phasesMillis", phaseTimings);
+    }
+}
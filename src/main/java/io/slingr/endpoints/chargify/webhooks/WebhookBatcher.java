@@ -0,0 +1,253 @@
+package io.slingr.endpoints.chargify.webhooks;
+
+import io.slingr.endpoints.utils.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+
+/**
+ * <p>Groups the events of the processed webhooks in batches, sent to the app as a single event.
+ * A batch is sent when it reaches the maximum size or when its oldest event waited for the maximum
+ * time.
+ *
+ * <p>Events of a batch are sorted by the id of their webhooks, which Chargify generates in
+ * increasing order, and batches are sent one at a time in the order they were closed, so the
+ * events of a subscription keep their order.
+ *
+ * <p>Webhooks are acknowledged to Chargify when their events are added to a batch, before the
+ * batch is sent, so Chargify does not retry them when the batch fails. A batch that cannot be sent
+ * is retried in background with an increasing delay, and the batches closed in the meantime wait
+ * behind it. After the last attempt, or when too many batches are waiting, the batch is dropped
+ * and the ids of its webhooks are passed to the lost listener, so a new delivery of them is not
+ * discarded as duplicated.
+ */
+public class WebhookBatcher {
+    private static final Logger logger = LoggerFactory.getLogger(WebhookBatcher.class);
+
+    private static final Comparator<Entry> BY_WEBHOOK_ID = Comparator.comparingLong(entry -> entry.webhookId);
+
+    private static final int SEND_ATTEMPTS = 5;
+    private static final long RETRY_DELAY_MILLIS = 500;
+    private static final int MAX_WAITING_BATCHES = 100;
+
+    private final int maxSize;
+    private final long maxWaitNanos;
+    private final long retryDelayNanos;
+    private final Consumer<List<Json>> sender;
+    private final LongConsumer lostListener;
+    private final ScheduledExecutorService timer;
+    private final Object sendLock = new Object();
+
+    private List<Entry> batch;
+    private long batchStart;
+
+    // batches closed but not sent yet, in order, guarded by the send lock
+    private final Deque<Closed> waiting = new ArrayDeque<>();
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong events = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong lostBatches = new AtomicLong();
+    private final AtomicLong lostEvents = new AtomicLong();
+
+    /**
+     * The sender receives the list of events of each batch, each one with its name and data
+     */
+    public WebhookBatcher(int maxSize, long maxWaitMillis, Consumer<List<Json>> sender) {
+        this(maxSize, maxWaitMillis, sender, webhookId -> {});
+    }
+
+    /**
+     * The lost listener receives the id of each webhook of the batches dropped after failing
+     */
+    public WebhookBatcher(int maxSize, long maxWaitMillis, Consumer<List<Json>> sender, LongConsumer lostListener) {
+        this(maxSize, maxWaitMillis, RETRY_DELAY_MILLIS, sender, lostListener);
+    }
+
+    WebhookBatcher(int maxSize, long maxWaitMillis, long retryDelayMillis, Consumer<List<Json>> sender, LongConsumer lostListener) {
+        this.maxSize = maxSize;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.retryDelayNanos = TimeUnit.MILLISECONDS.toNanos(retryDelayMillis);
+        this.sender = sender;
+        this.lostListener = lostListener;
+        this.batch = new ArrayList<>(maxSize);
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "chargify-webhook-batches");
+            thread.setDaemon(true);
+            return thread;
+        });
+        final long period = Math.max(1, Math.min(maxWaitMillis, retryDelayMillis) / 4);
+        this.timer.scheduleWithFixedDelay(this::flushExpired, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    public void add(long webhookId, String event, Json data) {
+        final boolean full;
+        synchronized (this) {
+            if (batch.isEmpty()) {
+                batchStart = System.nanoTime();
+            }
+            batch.add(new Entry(webhookId, event, data));
+            full = batch.size() >= maxSize;
+        }
+        if (full) {
+            flush(false);
+        }
+    }
+
+    private void flushExpired() {
+        try {
+            flush(true);
+        } catch (Exception ex) {
+            logger.warn("Error sending batch of webhooks: {}", ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Sends the batches waiting for a retry that are due and then the current batch. The batch is
+     * taken while holding the lock of the sender, so batches are sent in the same order they are
+     * taken. Errors of the sender are never thrown to the caller.
+     */
+    private void flush(boolean onlyExpired) {
+        synchronized (sendLock) {
+            final List<Entry> closed;
+            synchronized (this) {
+                if (batch.isEmpty() || (onlyExpired && System.nanoTime() - batchStart < maxWaitNanos)) {
+                    closed = null;
+                } else {
+                    closed = batch;
+                    batch = new ArrayList<>(maxSize);
+                }
+            }
+            if (closed != null) {
+                closed.sort(BY_WEBHOOK_ID);
+                waiting.addLast(new Closed(closed));
+                if (waiting.size() > MAX_WAITING_BATCHES) {
+                    lose(waiting.pollFirst(), "too many batches are waiting to be sent");
+                }
+            }
+            sendWaiting(false);
+        }
+    }
+
+    /**
+     * Sends the waiting batches in order, stopping at the first one that is not due yet or that
+     * fails again. Must be called holding the send lock.
+     */
+    private void sendWaiting(boolean ignoreDelay) {
+        while (!waiting.isEmpty()) {
+            final Closed closed = waiting.peekFirst();
+            if (!ignoreDelay && System.nanoTime() < closed.nextAttempt) {
+                return;
+            }
+            final List<Json> list = new ArrayList<>(closed.entries.size());
+            for (Entry entry : closed.entries) {
+                list.add(Json.map().set("event", entry.event).set("data", entry.data));
+            }
+            try {
+                sender.accept(list);
+            } catch (Exception ex) {
+                closed.attempts++;
+                if (closed.attempts >= SEND_ATTEMPTS) {
+                    waiting.pollFirst();
+                    lose(closed, ex.getMessage());
+                    continue;
+                }
+                retries.incrementAndGet();
+                closed.nextAttempt = System.nanoTime() + retryDelayNanos * closed.attempts;
+                logger.warn("Error sending batch of [{}] webhooks, retrying (attempt [{}]): {}",
+                        closed.entries.size(), closed.attempts, ex.getMessage());
+                return;
+            }
+            waiting.pollFirst();
+            batches.incrementAndGet();
+            events.addAndGet(closed.entries.size());
+        }
+    }
+
+    private void lose(Closed closed, String reason) {
+        lostBatches.incrementAndGet();
+        lostEvents.addAndGet(closed.entries.size());
+        logger.error("Batch of [{}] webhooks dropped, sent [{}] times: {}", closed.entries.size(), closed.attempts, reason);
+        for (Entry entry : closed.entries) {
+            try {
+                lostListener.accept(entry.webhookId);
+            } catch (Exception ex) {
+                logger.warn("Error notifying lost webhook [{}]: {}", entry.webhookId, ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Stops the timer and sends the pending events, trying once more the batches waiting for a
+     * retry. Batches that still fail are dropped.
+     */
+    public void stop() {
+        timer.shutdownNow();
+        synchronized (sendLock) {
+            flush(false);
+            sendWaiting(true);
+            while (!waiting.isEmpty()) {
+                lose(waiting.pollFirst(), "the batcher was stopped");
+            }
+        }
+    }
+
+    public Json stats() {
+        final long sent = batches.get();
+        final int pending;
+        synchronized (this) {
+            pending = batch.size();
+        }
+        final int waitingBatches;
+        synchronized (sendLock) {
+            waitingBatches = waiting.size();
+        }
+        return Json.map()
+                .set("maxSize", maxSize)
+                .set("maxWaitMillis", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos))
+                .set("pending", pending)
+                .set("waitingBatches", waitingBatches)
+                .set("batches", sent)
+                .set("events", events.get())
+                .set("averageSize", sent > 0 ? (double) events.get() / sent : 0.0)
+                .set("retries", retries.get())
+                .set("lostBatches", lostBatches.get())
+                .set("lostEvents", lostEvents.get());
+    }
+
+    private static class Entry {
+        private final long webhookId;
+        private final String event;
+        private final Json data;
+
+        private Entry(long webhookId, String event, Json data) {
+            this.webhookId = webhookId;
+            this.event = event;
+            this.data = data;
+        }
+    }
+
+    /**
+     * Batch already closed, with the attempts to send it
+     */
+    private static class Closed {
+        private final List<Entry> entries;
+        private int attempts = 0;
+        private long nextAttempt = System.nanoTime();
+
+        private Closed(List<Entry> entries) {
+            this.entries = entries;
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package io.slingr.endpoints.chargify.webhooks;
+
+import io.slingr.endpoints.utils.Json;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * <p>Set of the ids of the webhooks received during the last time window, used to discard the
+ * deliveries retried by Chargify. Ids are kept in primitive arrays: an open addressing hash table
+ * for the lookups and a ring with the arrival order, used to expire old ids and to drop the oldest
+ * id when the set is full.
+ */
+public class WebhookDeduplicator {
+
+    private static final long EMPTY = 0;
+
+    private final int capacity;
+    private final long windowNanos;
+    private final LongSupplier clock;
+
+    private final long[] table;
+    private final int mask;
+
+    private final long[] ringIds;
+    private final long[] ringTimes;
+    private int head;
+    private int size;
+
+    private long received;
+    private long duplicates;
+
+    public WebhookDeduplicator(int capacity, long window, TimeUnit unit) {
+        this(capacity, window, unit, System::nanoTime);
+    }
+
+    WebhookDeduplicator(int capacity, long window, TimeUnit unit, LongSupplier clock) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException(String.format("Invalid capacity [%s]", capacity));
+        }
+        this.capacity = capacity;
+        this.windowNanos = unit.toNanos(window);
+        this.clock = clock;
+        // load factor of the table is kept under 0.5
+        final int tableSize = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        this.table = new long[tableSize];
+        this.mask = tableSize - 1;
+        this.ringIds = new long[capacity];
+        this.ringTimes = new long[capacity];
+    }
+
+    /**
+     * Registers the id and returns true if it was already received during the window. Ids lower
+     * than 1 are never considered duplicated.
+     */
+    public synchronized boolean isDuplicate(long id) {
+        received++;
+        if (id <= EMPTY) {
+            return false;
+        }
+        final long now = clock.getAsLong();
+        expire(now);
+        if (contains(id)) {
+            duplicates++;
+            return true;
+        }
+        if (size == capacity) {
+            removeOldest();
+        }
+        final int tail = (head + size) % capacity;
+        ringIds[tail] = id;
+        ringTimes[tail] = now;
+        size++;
+        insert(id);
+        return false;
+    }
+
+    /**
+     * Removes the id from the set, used when a webhook could not be accepted and Chargify
+     * has to deliver it again
+     */
+    public synchronized void forget(long id) {
+        if (id <= EMPTY || !contains(id)) {
+            return;
+        }
+        remove(id);
+        // the slot of the ring expires as usual, it is usually the newest one
+        for (int i = size - 1; i >= 0; i--) {
+            final int position = (head + i) % capacity;
+            if (ringIds[position] == id) {
+                ringIds[position] = EMPTY;
+                return;
+            }
+        }
+    }
+
+    private void expire(long now) {
+        while (size > 0 && now - ringTimes[head] > windowNanos) {
+            removeOldest();
+        }
+    }
+
+    private void removeOldest() {
+        if (ringIds[head] != EMPTY) {
+            remove(ringIds[head]);
+        }
+        head = (head + 1) % capacity;
+        size--;
+    }
+
+    private int slot(long id) {
+        final long hash = id * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private boolean contains(long id) {
+        for (int i = slot(id); table[i] != EMPTY; i = (i + 1) & mask) {
+            if (table[i] == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void insert(long id) {
+        int i = slot(id);
+        while (table[i] != EMPTY) {
+            i = (i + 1) & mask;
+        }
+        table[i] = id;
+    }
+
+    private void remove(long id) {
+        int i = slot(id);
+        while (table[i] != id) {
+            if (table[i] == EMPTY) {
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        // backward shift of the following entries of the cluster
+        int gap = i;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (table[j] == EMPTY) {
+                break;
+            }
+            final int home = slot(table[j]);
+            // entry can be moved to the gap if its home is not between the gap and its position
+            if (((j - home) & mask) >= ((j - gap) & mask)) {
+                table[gap] = table[j];
+                gap = j;
+            }
+        }
+        table[gap] = EMPTY;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized Json stats() {
+        return Json.map()
+                .set("size", size)
+                .set("capacity", capacity)
+                .set("windowSeconds", TimeUnit.NANOSECONDS.toSeconds(windowNanos))
+                .set("received", received)
+                .set("duplicates", duplicates)
+                .set("duplicateRate", received > 0 ? (double) duplicates / received : 0.0);
+    }
+}
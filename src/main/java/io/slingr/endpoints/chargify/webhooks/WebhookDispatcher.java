@@ -0,0 +1,250 @@
+package io.slingr.endpoints.chargify.webhooks;
+
+import io.slingr.endpoints.utils.Json;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * <p>Bounded queues of received webhooks, each one processed by its own thread. It allows
+ * answering Chargify as soon as the webhook is queued, without waiting for its processing.
+ *
+ * <p>Webhooks are partitioned in lanes by a key, like the id of their subscription, so the webhooks
+ * of the same key are processed one at a time in the order they were received, while webhooks of
+ * different keys are processed in parallel. Webhooks without key are spread over all the lanes.
+ *
+ * <p>When the queue of a lane is full the webhook is rejected right away or, with the blocking
+ * backpressure, after waiting for room during the configured timeout.
+ *
+ * <p>Queued webhooks were already acknowledged, so Chargify will not send them again: a webhook
+ * that fails is retried in its lane a few times, and the queues are drained when the dispatcher
+ * is stopped.
+ */
+public class WebhookDispatcher {
+    private static final Logger logger = LoggerFactory.getLogger(WebhookDispatcher.class);
+
+    private static final int PROCESSING_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 500;
+    private static final long POLL_MILLIS = 100;
+
+    public enum Backpressure {
+        REJECT, BLOCK;
+
+        public static Backpressure fromString(String value) {
+            return "block".equalsIgnoreCase(value) ? BLOCK : REJECT;
+        }
+    }
+
+    private final Lane[] lanes;
+    private final int capacity;
+    private final Backpressure backpressure;
+    private final long blockTimeoutMillis;
+    private final Consumer<String> handler;
+    private final AtomicInteger nextLane = new AtomicInteger();
+    private volatile boolean stopping = false;
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong totalLagNanos = new AtomicLong();
+    private final AtomicLong maxLagNanos = new AtomicLong();
+
+    /**
+     * The capacity is split evenly between the lanes
+     */
+    public WebhookDispatcher(int capacity, int lanes, Backpressure backpressure, long blockTimeoutMillis, Consumer<String> handler) {
+        final int laneCapacity = Math.max(1, capacity / lanes);
+        this.capacity = laneCapacity * lanes;
+        this.backpressure = backpressure;
+        this.blockTimeoutMillis = blockTimeoutMillis;
+        this.handler = handler;
+        this.lanes = new Lane[lanes];
+        for (int i = 0; i < lanes; i++) {
+            this.lanes[i] = new Lane(i + 1, laneCapacity);
+        }
+    }
+
+    /**
+     * Queues the body of the webhook in the lane of the key, which can be null. Returns false when
+     * it is rejected because the queue of the lane is full or the dispatcher is stopping.
+     */
+    public boolean submit(String key, String body) {
+        final Lane lane = lanes[laneIndex(key)];
+        final Delivery delivery = new Delivery(body, System.nanoTime());
+        boolean queued = false;
+        if (!stopping) {
+            if (backpressure == Backpressure.BLOCK) {
+                try {
+                    queued = lane.queue.offer(delivery, blockTimeoutMillis, TimeUnit.MILLISECONDS);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                queued = lane.queue.offer(delivery);
+            }
+        }
+        if (queued) {
+            accepted.incrementAndGet();
+        } else {
+            rejected.incrementAndGet();
+        }
+        return queued;
+    }
+
+    int laneIndex(String key) {
+        if (key == null) {
+            return Math.floorMod(nextLane.getAndIncrement(), lanes.length);
+        }
+        final int hash = key.hashCode() * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), lanes.length);
+    }
+
+    private void process(Delivery delivery) throws InterruptedException {
+        final long lag = System.nanoTime() - delivery.enqueuedAt;
+        totalLagNanos.addAndGet(lag);
+        maxLagNanos.accumulateAndGet(lag, Math::max);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                handler.accept(delivery.body);
+                dispatched.incrementAndGet();
+                return;
+            } catch (Exception ex) {
+                if (attempt >= PROCESSING_ATTEMPTS) {
+                    failed.incrementAndGet();
+                    logger.error("Error processing webhook [{}] after [{}] attempts, it is lost: {}",
+                            WebhookParser.value(delivery.body, "id"), attempt, ex.getMessage(), ex);
+                    return;
+                }
+                retried.incrementAndGet();
+                logger.warn("Error processing webhook [{}], retrying (attempt [{}]): {}",
+                        WebhookParser.value(delivery.body, "id"), attempt, ex.getMessage());
+                try {
+                    TimeUnit.MILLISECONDS.sleep(RETRY_DELAY_MILLIS * attempt);
+                } catch (InterruptedException ie) {
+                    failed.incrementAndGet();
+                    logger.error("Dispatcher of webhooks stopped while retrying webhook [{}], it is lost",
+                            WebhookParser.value(delivery.body, "id"));
+                    throw ie;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops accepting webhooks and waits up to the given timeout for the queued ones to be
+     * processed. Webhooks still queued after the timeout are dropped.
+     */
+    public void stop(long timeoutMillis) {
+        stopping = true;
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (Lane lane : lanes) {
+            try {
+                lane.thread.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime())));
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        int pending = 0;
+        for (Lane lane : lanes) {
+            lane.thread.interrupt();
+            pending += lane.queue.size();
+            lane.queue.clear();
+        }
+        if (pending > 0) {
+            dropped.addAndGet(pending);
+            logger.error("Dispatcher of webhooks stopped with [{}] webhooks still queued, they are lost", pending);
+        }
+    }
+
+    /**
+     * Number of webhooks waiting in the queues of all the lanes
+     */
+    public int queueDepth() {
+        int queueDepth = 0;
+        for (Lane lane : lanes) {
+            queueDepth += lane.queue.size();
+        }
+        return queueDepth;
+    }
+
+    public Json stats() {
+        final long count = dispatched.get() + failed.get();
+        final Json depths = Json.list();
+        int queueDepth = 0;
+        int maxLaneDepth = 0;
+        for (Lane lane : lanes) {
+            final int depth = lane.queue.size();
+            depths.push(depth);
+            queueDepth += depth;
+            maxLaneDepth = Math.max(maxLaneDepth, depth);
+        }
+        return Json.map()
+                .set("queueDepth", queueDepth)
+                .set("capacity", capacity)
+                .set("lanes", lanes.length)
+                .set("laneDepths", depths)
+                .set("maxLaneDepth", maxLaneDepth)
+                .set("backpressure", backpressure.name().toLowerCase())
+                .set("accepted", accepted.get())
+                .set("rejected", rejected.get())
+                .set("dispatched", dispatched.get())
+                .set("retried", retried.get())
+                .set("failed", failed.get())
+                .set("dropped", dropped.get())
+                .set("averageLagMillis", count > 0 ? TimeUnit.NANOSECONDS.toMillis(totalLagNanos.get() / count) : 0)
+                .set("maxLagMillis", TimeUnit.NANOSECONDS.toMillis(maxLagNanos.get()));
+    }
+
+    /**
+     * Queue of webhooks consumed by a single thread
+     */
+    private class Lane {
+        private final BlockingQueue<Delivery> queue;
+        private final Thread thread;
+
+        private Lane(int number, int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.thread = new Thread(this::consume, String.format("chargify-webhooks-%s", number));
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        /**
+         * Processes the queued webhooks until the dispatcher is stopping and the queue is empty
+         */
+        private void consume() {
+            try {
+                while (true) {
+                    final Delivery delivery = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (delivery != null) {
+                        process(delivery);
+                    } else if (stopping) {
+                        return;
+                    }
+                }
+            } catch (InterruptedException ex) {
+                // stop timeout reached
+            }
+        }
+    }
+
+    private static class Delivery {
+        private final String body;
+        private final long enqueuedAt;
+
+        private Delivery(String body, long enqueuedAt) {
+            this.body = body;
+            this.enqueuedAt = enqueuedAt;
+        }
+    }
+}
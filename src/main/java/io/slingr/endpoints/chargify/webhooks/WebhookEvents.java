@@ -0,0 +1,81 @@
+package io.slingr.endpoints.chargify.webhooks;
+
+import io.slingr.endpoints.chargify.utils.Convert;
+import io.slingr.endpoints.utils.Json;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>Typed events sent to the app for the webhooks of Chargify. The subscription, customer and
+ * payment profile of the payload are converted to the SLINGR format, the same returned by the
+ * functions, and the rest of the payload is sent as it is.
+ */
+public class WebhookEvents {
+
+    private static final Map<String, String> EVENTS = new HashMap<>();
+
+    static {
+        EVENTS.put("signup_success", "subscriptionSignedUp");
+        EVENTS.put("signup_failure", "subscriptionSignupFailed");
+        EVENTS.put("subscription_state_change", "subscriptionStateChanged");
+        EVENTS.put("subscription_product_change", "subscriptionProductChanged");
+        EVENTS.put("subscription_card_update", "subscriptionCardUpdated");
+        EVENTS.put("billing_date_change", "subscriptionBillingDateChanged");
+        EVENTS.put("renewal_success", "subscriptionRenewed");
+        EVENTS.put("renewal_failure", "subscriptionRenewalFailed");
+        EVENTS.put("payment_success", "paymentSucceeded");
+        EVENTS.put("payment_failure", "paymentFailed");
+        EVENTS.put("expiring_card", "cardExpiring");
+        EVENTS.put("customer_create", "customerCreated");
+        EVENTS.put("customer_update", "customerUpdated");
+    }
+
+    private static final String SUBSCRIPTION = "subscription";
+    private static final String CUSTOMER = "customer";
+    private static final String PAYMENT_PROFILE = "payment_profile";
+
+    private WebhookEvents() {
+    }
+
+    /**
+     * Name of the typed event of the given Chargify event, or null if there is no typed event for it
+     */
+    public static String eventName(String chargifyEvent) {
+        return chargifyEvent != null ? EVENTS.get(chargifyEvent) : null;
+    }
+
+    /**
+     * Data of the typed event of the parsed webhook
+     */
+    public static Json toSlingr(Json webhook) {
+        final Json event = Json.map()
+                .setIfNotNull("webhookId", webhook.string("id"))
+                .setIfNotNull("event", webhook.string("event"));
+        final Json payload = webhook.json("payload");
+        if (payload == null) {
+            return event;
+        }
+        final Json others = Json.map();
+        for (String key : payload.keys()) {
+            switch (key) {
+                case SUBSCRIPTION:
+                    event.set("subscription", Convert.subscriptionToSlingr(payload.json(key)));
+                    break;
+                case CUSTOMER:
+                    event.set("customer", Convert.customerToSlingr(payload.json(key)));
+                    break;
+                case PAYMENT_PROFILE:
+                    event.set("paymentProfile", Convert.paymentProfileToSlingr(payload.json(key)));
+                    break;
+                default:
+                    others.set(key, payload.object(key));
+                    break;
+            }
+        }
+        if (!others.isEmpty()) {
+            event.set("payload", others);
+        }
+        return event;
+    }
+}
@@ -0,0 +1,319 @@
+package io.slingr.endpoints.chargify.webhooks;
+
+import io.slingr.endpoints.utils.Json;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * <p>Parser of the form-encoded bodies of the webhooks sent by Chargify, like
+ * <code>id=1&amp;event=signup_success&amp;payload[subscription][customer][email]=...</code>
+ *
+ * <p>The body is decoded in a single pass directly into a tree of maps: keys are decoded in a
+ * buffer reused by the thread, their segments are interned, and the maps of the previous key are
+ * reused while the segments of the next key match them (keys of the same resource are sent together).
+ *
+ * <p>Empty segments build lists, like <code>items[]=1&amp;items[]=2</code> or
+ * <code>items[][id]=1&amp;items[][id]=2</code>: a new element is started when the key of a value
+ * is already set on the last element of the list.
+ */
+public class WebhookParser {
+
+    private static final int MAX_DEPTH = 16;
+    private static final int SEGMENTS_POOL_SIZE = 1024;
+
+    // cache of key segments, so the same strings are shared by all the parsed webhooks
+    private static final String[] segmentsPool = new String[SEGMENTS_POOL_SIZE];
+
+    private static final ThreadLocal<Decoder> decoders = ThreadLocal.withInitial(Decoder::new);
+
+    private WebhookParser() {
+    }
+
+    public static Json parse(CharSequence body) {
+        return Json.fromObject(parseMap(body));
+    }
+
+    /**
+     * Returns the decoded value of a key (like 'id' or 'payload[subscription][id]') without parsing the rest of the body
+     */
+    public static String value(CharSequence body, String key) {
+        if (body == null) {
+            return null;
+        }
+        final int length = body.length();
+        final int keyLength = key.length();
+        int start = 0;
+        while (start < length) {
+            int end = start;
+            int separator = -1;
+            boolean encoded = false;
+            while (end < length && body.charAt(end) != '&') {
+                if (separator < 0) {
+                    if (body.charAt(end) == '=') {
+                        separator = end;
+                    } else if (body.charAt(end) == '%') {
+                        encoded = true;
+                    }
+                }
+                end++;
+            }
+            if (separator > start && matches(body, start, separator, key, keyLength, encoded)) {
+                final Decoder decoder = decoders.get();
+                decoder.decode(body, separator + 1, end);
+                return decoder.buffer.toString();
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+
+    private static boolean matches(CharSequence body, int start, int end, String key, int keyLength, boolean encoded) {
+        if (!encoded) {
+            return end - start == keyLength && regionMatches(body, start, key);
+        }
+        // keys with brackets can be sent percent-encoded
+        final Decoder decoder = decoders.get();
+        decoder.decode(body, start, end);
+        return decoder.buffer.length() == keyLength && key.contentEquals(decoder.buffer);
+    }
+
+    static Map<String, Object> parseMap(CharSequence body) {
+        final Map<String, Object> root = new LinkedHashMap<>();
+        if (body == null) {
+            return root;
+        }
+        final Decoder decoder = decoders.get();
+        final StringBuilder buffer = decoder.buffer;
+        final String[] segments = decoder.segments;
+        final String[] path = decoder.path;
+        final Object[] maps = decoder.maps;
+        maps[0] = root;
+        int pathDepth = 0;
+
+        final int length = body.length();
+        int position = 0;
+        while (position < length) {
+            // key
+            int end = position;
+            while (end < length && body.charAt(end) != '=' && body.charAt(end) != '&') {
+                end++;
+            }
+            decoder.decode(body, position, end);
+            final int count = split(buffer, segments);
+
+            // value
+            String value = "";
+            if (end < length && body.charAt(end) == '=') {
+                position = end + 1;
+                end = position;
+                while (end < length && body.charAt(end) != '&') {
+                    end++;
+                }
+                decoder.decode(body, position, end);
+                value = buffer.toString();
+            }
+            position = end + 1;
+            if (count == 0) {
+                continue;
+            }
+            if (hasEmptySegment(segments, count)) {
+                putWithLists(root, segments, count, value);
+                // lists may have replaced the maps of the previous key
+                pathDepth = 0;
+                continue;
+            }
+
+            // maps of the previous key are reused while the segments match
+            int depth = 0;
+            while (depth < count - 1 && depth < pathDepth && segments[depth].equals(path[depth])) {
+                depth++;
+            }
+            pathDepth = depth;
+            for (; depth < count - 1; depth++) {
+                @SuppressWarnings("unchecked")
+                final Map<String, Object> parent = (Map<String, Object>) maps[depth];
+                Object child = parent.get(segments[depth]);
+                if (!(child instanceof Map)) {
+                    child = new LinkedHashMap<String, Object>();
+                    parent.put(segments[depth], child);
+                }
+                path[depth] = segments[depth];
+                maps[depth + 1] = child;
+                pathDepth = depth + 1;
+            }
+            @SuppressWarnings("unchecked")
+            final Map<String, Object> parent = (Map<String, Object>) maps[count - 1];
+            parent.put(segments[count - 1], value);
+        }
+        for (int i = 0; i < maps.length; i++) {
+            maps[i] = null;
+        }
+        return root;
+    }
+
+    private static boolean hasEmptySegment(String[] segments, int count) {
+        for (int i = 0; i < count; i++) {
+            if (segments[i].isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sets the value of a key with empty segments, which are elements of lists
+     */
+    @SuppressWarnings("unchecked")
+    private static void putWithLists(Map<String, Object> root, String[] segments, int count, String value) {
+        Object container = root;
+        for (int i = 0; i < count; i++) {
+            final boolean last = i == count - 1;
+            if (container instanceof List) {
+                final List<Object> list = (List<Object>) container;
+                if (last) {
+                    list.add(value);
+                    return;
+                }
+                Object element = list.isEmpty() ? null : list.get(list.size() - 1);
+                if (!(element instanceof Map) || (i + 2 == count && ((Map<String, Object>) element).containsKey(segments[i + 1]))) {
+                    element = new LinkedHashMap<String, Object>();
+                    list.add(element);
+                }
+                container = element;
+                continue;
+            }
+            final Map<String, Object> map = (Map<String, Object>) container;
+            if (last) {
+                map.put(segments[i], value);
+                return;
+            }
+            final boolean list = segments[i + 1].isEmpty();
+            Object child = map.get(segments[i]);
+            if (list ? !(child instanceof List) : !(child instanceof Map)) {
+                child = list ? new ArrayList<>() : new LinkedHashMap<String, Object>();
+                map.put(segments[i], child);
+            }
+            container = child;
+        }
+    }
+
+    /**
+     * Splits a key like <code>payload[subscription][id]</code> in its segments
+     */
+    private static int split(StringBuilder key, String[] segments) {
+        final int length = key.length();
+        int count = 0;
+        int start = 0;
+        int position = 0;
+        while (position < length && count < MAX_DEPTH) {
+            final char c = key.charAt(position);
+            if (c == '[' || c == ']') {
+                if (position > start || (c == ']' && key.charAt(position - 1) == '[')) {
+                    segments[count++] = intern(key, start, position);
+                }
+                start = position + 1;
+            }
+            position++;
+        }
+        if (start < length && count < MAX_DEPTH) {
+            segments[count++] = intern(key, start, length);
+        }
+        return count;
+    }
+
+    private static String intern(CharSequence chars, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + chars.charAt(i);
+        }
+        final int slot = (hash ^ (hash >>> 16)) & (SEGMENTS_POOL_SIZE - 1);
+        final String cached = segmentsPool[slot];
+        if (cached != null && cached.length() == end - start && regionMatches(chars, start, cached)) {
+            return cached;
+        }
+        final String segment = chars.subSequence(start, end).toString();
+        segmentsPool[slot] = segment;
+        return segment;
+    }
+
+    private static boolean regionMatches(CharSequence chars, int start, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (chars.charAt(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Buffers reused by the parser on each thread
+     */
+    private static class Decoder {
+        private final StringBuilder buffer = new StringBuilder(256);
+        private final String[] segments = new String[MAX_DEPTH];
+        private final String[] path = new String[MAX_DEPTH];
+        private final Object[] maps = new Object[MAX_DEPTH];
+        private byte[] bytes = new byte[64];
+
+        /**
+         * Decodes the percent-encoded characters of the given range into the buffer
+         */
+        private void decode(CharSequence chars, int start, int end) {
+            buffer.setLength(0);
+            int position = start;
+            while (position < end) {
+                final char c = chars.charAt(position);
+                if (c == '+') {
+                    buffer.append(' ');
+                    position++;
+                } else if (c == '%' && isEncoded(chars, position, end)) {
+                    // consecutive encoded bytes are decoded together, they can be a multi-byte character
+                    int count = 0;
+                    boolean ascii = true;
+                    while (position < end && chars.charAt(position) == '%' && isEncoded(chars, position, end)) {
+                        final byte b = (byte) ((hex(chars.charAt(position + 1)) << 4) + hex(chars.charAt(position + 2)));
+                        if (count == bytes.length) {
+                            final byte[] larger = new byte[bytes.length * 2];
+                            System.arraycopy(bytes, 0, larger, 0, count);
+                            bytes = larger;
+                        }
+                        bytes[count++] = b;
+                        ascii &= b >= 0;
+                        position += 3;
+                    }
+                    if (ascii) {
+                        for (int i = 0; i < count; i++) {
+                            buffer.append((char) bytes[i]);
+                        }
+                    } else {
+                        buffer.append(new String(bytes, 0, count, StandardCharsets.UTF_8));
+                    }
+                } else {
+                    buffer.append(c);
+                    position++;
+                }
+            }
+        }
+
+        private static boolean isEncoded(CharSequence chars, int position, int end) {
+            return position + 2 < end && hex(chars.charAt(position + 1)) >= 0 && hex(chars.charAt(position + 2)) >= 0;
+        }
+
+        private static int hex(char c) {
+            if (c >= '0' && c <= '9') {
+                return c - '0';
+            }
+            if (c >= 'a' && c <= 'f') {
+                return c - 'a' + 10;
+            }
+            if (c >= 'A' && c <= 'F') {
+                return c - 'A' + 10;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package io.slingr.endpoints.chargify.webhooks;
+
+import org.apache.commons.lang3.StringUtils;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+
+/**
+ * <p>Verification of the signature sent by Chargify on each webhook: the HMAC-SHA256 of the raw
+ * body using the site shared key, in hexadecimal.
+ *
+ * <p>The keyed MAC is prepared once per thread, and the body is fed to it in chunks encoded in a
+ * buffer reused by the thread, so the body is never copied as a whole.
+ */
+public class WebhookSignature {
+
+    public static final String HEADER = "X-Chargify-Webhook-Signature-Hmac-Sha-256";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final int CHUNK_SIZE = 4096;
+
+    private final ThreadLocal<Signer> signers;
+
+    public WebhookSignature(String siteSharedKey) {
+        if (StringUtils.isBlank(siteSharedKey)) {
+            throw new IllegalArgumentException("Empty site shared key");
+        }
+        final SecretKeySpec key = new SecretKeySpec(siteSharedKey.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+        // fails fast if the algorithm is not available
+        new Signer(key);
+        this.signers = ThreadLocal.withInitial(() -> new Signer(key));
+    }
+
+    /**
+     * Checks the given hexadecimal signature against the body. The comparison takes the same time
+     * no matter where the signatures differ.
+     */
+    public boolean verify(CharSequence body, String signature) {
+        if (body == null || StringUtils.isBlank(signature)) {
+            return false;
+        }
+        final byte[] expected = fromHex(signature.trim());
+        if (expected == null) {
+            return false;
+        }
+        return MessageDigest.isEqual(signers.get().sign(body), expected);
+    }
+
+    private static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            final int high = Character.digit(hex.charAt(i * 2), 16);
+            final int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                return null;
+            }
+            bytes[i] = (byte) ((high << 4) + low);
+        }
+        return bytes;
+    }
+
+    private static class Signer {
+        private final Mac mac;
+        private final byte[] chunk = new byte[CHUNK_SIZE];
+
+        private Signer(SecretKeySpec key) {
+            try {
+                mac = Mac.getInstance(ALGORITHM);
+                mac.init(key);
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException(String.format("Invalid signature algorithm [%s]", ALGORITHM), ex);
+            }
+        }
+
+        /**
+         * Calculates the MAC of the UTF-8 bytes of the body
+         */
+        private byte[] sign(CharSequence body) {
+            final int length = body.length();
+            int size = 0;
+            for (int i = 0; i < length; i++) {
+                // room for the longest UTF-8 sequence
+                if (size > CHUNK_SIZE - 4) {
+                    mac.update(chunk, 0, size);
+                    size = 0;
+                }
+                final char c = body.charAt(i);
+                if (c < 0x80) {
+                    chunk[size++] = (byte) c;
+                } else if (c < 0x800) {
+                    chunk[size++] = (byte) (0xC0 | (c >> 6));
+                    chunk[size++] = (byte) (0x80 | (c & 0x3F));
+                } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(body.charAt(i + 1))) {
+                    final int codePoint = Character.toCodePoint(c, body.charAt(++i));
+                    chunk[size++] = (byte) (0xF0 | (codePoint >> 18));
+                    chunk[size++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                    chunk[size++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                    chunk[size++] = (byte) (0x80 | (codePoint & 0x3F));
+                } else if (Character.isSurrogate(c)) {
+                    // malformed surrogate, encoded as '?' like String.getBytes does
+                    chunk[size++] = (byte) '?';
+                } else {
+                    chunk[size++] = (byte) (0xE0 | (c >> 12));
+                    chunk[size++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                    chunk[size++] = (byte) (0x80 | (c & 0x3F));
+                }
+            }
+            mac.update(chunk, 0, size);
+            return mac.doFinal();
+        }
+    }
+}
@@ -102,6 +102,47 @@ public class ChargifyEndpointTest {
         logger.info("-- END");
     }
 
+    @Test
+    public void testBulkCustomerFunctions() throws Exception {
+        Json response;
+
+        final String id1 = randomId();
+        final String id2 = randomId();
+
+        response = test.executeFunction( "createCustomers", Json.map().set("customers", Json.list()
+                .push(Json.map().set("id", id1).set("lastName", "Last name").set("firstName", "First name").set("email", "email@slingr.io"))
+                .push(Json.map().set("id", randomId()).set("lastName", "Last name"))
+                .push(Json.map().set("id", id2).set("lastName", "Last name").set("firstName", "First name").set("email", "email@slingr.io"))));
+        assertNotNull(response);
+        assertEquals((Integer) 2, response.integer("succeeded"));
+        assertEquals((Integer) 1, response.integer("failed"));
+
+        final Json first = response.jsons("results").get(0);
+        assertTrue(first.bool("success"));
+        checkConsumer(id1, null, "email@slingr.io", first.json("customer"));
+
+        final Json second = response.jsons("results").get(1);
+        assertFalse(second.bool("success"));
+        assertEquals("Invalid empty fields [firstName, email]", second.string("message"));
+
+        final Json third = response.jsons("results").get(2);
+        assertTrue(third.bool("success"));
+        checkConsumer(id2, null, "email@slingr.io", third.json("customer"));
+
+        response = test.executeFunction( "updateCustomers", Json.map().set("customers", Json.list()
+                .push(first.json("customer").set("email", "email+2@slingr.io"))
+                .push(third.json("customer").set("email", "email+2@slingr.io"))));
+        assertNotNull(response);
+        assertEquals((Integer) 2, response.integer("succeeded"));
+        checkConsumer(id1, first.json("customer").integer("chargifyId"), "email+2@slingr.io", response.jsons("results").get(0).json("customer"));
+        checkConsumer(id2, third.json("customer").integer("chargifyId"), "email+2@slingr.io", response.jsons("results").get(1).json("customer"));
+
+        test.executeFunction( "removeCustomer", Json.map().set("chargifyId", first.json("customer").integer("chargifyId")));
+        test.executeFunction( "removeCustomer", Json.map().set("chargifyId", third.json("customer").integer("chargifyId")));
+
+        logger.info("-- END");
+    }
+
     @Test
     public void testInvalidCustomerFunctions() throws Exception {
         Json response;
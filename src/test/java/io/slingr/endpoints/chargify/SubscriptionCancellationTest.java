@@ -0,0 +1,28 @@
+package io.slingr.endpoints.chargify;
+
+import io.slingr.endpoints.services.rest.HttpRequest;
+import io.slingr.endpoints.services.rest.RestMethod;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the requests sent to cancel subscriptions
+ */
+public class SubscriptionCancellationTest {
+
+    @Test
+    public void testCancellationMessage() {
+        final HttpRequest request = ChargifyEndpoint.subscriptionCancellationRequest(123, "Too expensive");
+        assertEquals(RestMethod.DELETE, request.getMethod());
+        assertEquals("subscriptions/123.json", request.getPath());
+        assertEquals("Too expensive", request.getParams().string("cancellation_message"));
+    }
+
+    @Test
+    public void testWithoutCancellationMessage() {
+        final HttpRequest request = ChargifyEndpoint.subscriptionCancellationRequest(123, " ");
+        assertEquals("subscriptions/123.json", request.getPath());
+        assertFalse(request.getParams().contains("cancellation_message"));
+    }
+}
@@ -0,0 +1,98 @@
+package io.slingr.endpoints.chargify.metrics;
+
+import io.slingr.endpoints.utils.Json;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the latencies recorded for the functions
+ */
+public class FunctionMetricsTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testWaitApartFromHttp() {
+        final FunctionMetrics metrics = new FunctionMetrics();
+        final FunctionMetrics.Call call = metrics.start("createCustomer");
+        metrics.recordRequest(200 * MILLIS, 300 * MILLIS);
+        metrics.recordWait(100 * MILLIS);
+        call.finish();
+        assertNull(metrics.current());
+
+        final Json stats = metrics.stats().json("createCustomer");
+        assertEquals(1L, (long) stats.json("http").longInteger("count"));
+        assertEquals(200.0, stats.json("http").decimal("maxMillis"), 200 / 8.0);
+        assertEquals(400.0, stats.json("wait").decimal("maxMillis"), 400 / 8.0);
+
+        // waits are not counted as conversion, which is never negative
+        assertTrue(stats.json("conversion").decimal("maxMillis") < 100);
+        assertEquals(1L, (long) stats.json("conversion").longInteger("count"));
+    }
+
+    @Test
+    public void testNestedCalls() {
+        final FunctionMetrics metrics = new FunctionMetrics();
+        final FunctionMetrics.Call outer = metrics.start("cancelSubscriptions");
+        final FunctionMetrics.Call inner = metrics.start("cancelSubscription");
+        assertSame(inner, metrics.current());
+        metrics.recordRequest(10 * MILLIS, 0);
+        inner.finish();
+        assertSame(outer, metrics.current());
+        outer.finish();
+
+        // requests of the nested call are added to the outer one
+        assertEquals(1L, (long) metrics.stats().json("cancelSubscriptions").json("http").longInteger("count"));
+        assertEquals(0L, (long) metrics.stats().json("cancelSubscriptions").json("wait").longInteger("count"));
+    }
+
+    @Test
+    public void testPoolTasks() throws Exception {
+        final FunctionMetrics metrics = new FunctionMetrics();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final FunctionMetrics.Call call = metrics.start("createCustomers");
+            executor.submit(() -> metrics.within(call, () -> {
+                assertSame(call, metrics.current());
+                metrics.recordRequest(10 * MILLIS, 5 * MILLIS);
+                return null;
+            })).get();
+
+            // without the call the requests are not recorded
+            executor.submit(() -> {
+                assertNull(metrics.current());
+                metrics.recordRequest(1000 * MILLIS, 0);
+            }).get();
+            call.finish();
+
+            final Json stats = metrics.stats().json("createCustomers");
+            assertEquals(10.0, stats.json("http").decimal("maxMillis"), 10 / 8.0);
+            assertEquals(5.0, stats.json("wait").decimal("maxMillis"), 5 / 8.0);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testDetachedCall() {
+        final FunctionMetrics metrics = new FunctionMetrics();
+        final FunctionMetrics.Call background = metrics.detached("listCustomersBackground");
+        assertNull(metrics.current());
+        metrics.within(background, () -> {
+            metrics.recordRequest(10 * MILLIS, 0);
+            return null;
+        });
+        assertNull(metrics.current());
+        background.failed(new IllegalStateException("broken page"));
+        background.finish();
+
+        final Json stats = metrics.stats().json("listCustomersBackground");
+        assertEquals(1L, (long) stats.json("total").longInteger("count"));
+        assertEquals(1L, (long) stats.json("errors").longInteger("UNEXPECTED"));
+    }
+}
@@ -0,0 +1,44 @@
+package io.slingr.endpoints.chargify.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the buckets and quantiles of the histograms
+ */
+public class HistogramTest {
+
+    @Test
+    public void testBuckets() {
+        for (long value = 0; value < 10000000L; value += value < 1000 ? 1 : 997) {
+            final int index = Histogram.index(value);
+            final long lowerBound = index == 0 ? 0 : Histogram.upperBound(index - 1) + 1;
+            final long upperBound = Histogram.upperBound(index);
+            assertTrue(value >= lowerBound && value <= upperBound);
+            // error lower than 12.5%
+            assertTrue(upperBound - value <= value / 8);
+        }
+        // values out of range are kept on the last bucket
+        assertEquals(Histogram.index(Long.MAX_VALUE), Histogram.index(Long.MAX_VALUE / 2));
+        assertEquals(0, Histogram.index(0));
+    }
+
+    @Test
+    public void testQuantiles() {
+        final Histogram histogram = new Histogram();
+        assertArrayEquals(new long[]{0, 0}, histogram.quantiles(0.5, 0.99));
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000);
+        }
+        assertEquals(1000, histogram.count());
+        assertEquals(500500000L, histogram.sum());
+        assertEquals(1000000, histogram.max());
+
+        final long[] quantiles = histogram.quantiles(0.5, 0.9, 1.0);
+        assertEquals(500000, quantiles[0], 500000 / 8.0);
+        assertEquals(900000, quantiles[1], 900000 / 8.0);
+        assertEquals(1000000, quantiles[2]);
+    }
+}
@@ -0,0 +1,95 @@
+package io.slingr.endpoints.chargify.metrics;
+
+import io.slingr.endpoints.utils.Json;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the metrics of the received webhooks
+ */
+public class WebhookMetricsTest {
+
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void testSeriesByEvent() {
+        final WebhookMetrics metrics = new WebhookMetrics();
+        final WebhookMetrics.Event payment = metrics.event("payment_success");
+        payment.received(100);
+        payment.parsed(2 * MILLIS);
+        payment.dispatched(10 * MILLIS);
+        payment.received(300);
+        payment.duplicated();
+        metrics.event("signup_success").received(50);
+        metrics.event("signup_success").parsed(MILLIS);
+        metrics.event("signup_success").rejected();
+
+        final Json stats = metrics.stats();
+        final Json paymentStats = stats.json("payment_success");
+        assertEquals(2L, (long) paymentStats.longInteger("received"));
+        assertEquals(1L, (long) paymentStats.longInteger("duplicated"));
+        assertEquals(0L, (long) paymentStats.longInteger("rejected"));
+        assertEquals(200L, (long) paymentStats.longInteger("averageBytes"));
+        assertEquals(1L, (long) paymentStats.json("parse").longInteger("count"));
+        assertEquals(2.0, paymentStats.json("parse").decimal("maxMillis"), 2 / 8.0);
+        assertEquals(1L, (long) paymentStats.json("dispatch").longInteger("count"));
+        assertEquals(10.0, paymentStats.json("dispatch").decimal("maxMillis"), 10 / 8.0);
+
+        // series of an event are not mixed with the ones of the others
+        final Json signupStats = stats.json("signup_success");
+        assertEquals(1L, (long) signupStats.longInteger("received"));
+        assertEquals(1L, (long) signupStats.longInteger("rejected"));
+        assertEquals(1L, (long) signupStats.json("parse").longInteger("count"));
+        assertEquals(0L, (long) signupStats.json("dispatch").longInteger("count"));
+    }
+
+    @Test
+    public void testEventTypes() {
+        final WebhookMetrics metrics = new WebhookMetrics();
+        metrics.event(null).received(10);
+        metrics.event("").received(10);
+        assertEquals(2L, (long) metrics.stats().json("unknown").longInteger("received"));
+
+        // the number of event types is limited, the rest are counted together
+        for (int i = 0; i < 150; i++) {
+            metrics.event("event_" + i).received(10);
+        }
+        // "unknown" and 99 more types, plus the one of the rest
+        assertEquals(101, metrics.stats().size());
+        assertEquals(51L, (long) metrics.stats().json("other").longInteger("received"));
+        assertSame(metrics.event("event_0"), metrics.event("event_0"));
+    }
+
+    @Test
+    public void testPrometheusFormat() {
+        final WebhookMetrics metrics = new WebhookMetrics();
+        final WebhookMetrics.Event payment = metrics.event("payment_success");
+        payment.received(100);
+        payment.parsed(2 * MILLIS);
+        payment.dispatched(10 * MILLIS);
+        metrics.event("signup_success").received(50);
+
+        final PrometheusFormat format = new PrometheusFormat();
+        metrics.write(format);
+        final String text = format.toString();
+
+        assertTrue(text.contains("chargify_webhooks_received_total{event=\"payment_success\"} 1\n"));
+        assertTrue(text.contains("chargify_webhooks_received_total{event=\"signup_success\"} 1\n"));
+        assertTrue(text.contains("chargify_webhooks_duplicated_total{event=\"payment_success\"} 0\n"));
+        assertTrue(text.contains("chargify_webhooks_payload_bytes_sum{event=\"payment_success\"} 100.0\n"));
+        assertTrue(text.contains("chargify_webhooks_parse_seconds_count{event=\"payment_success\"} 1\n"));
+        assertTrue(text.contains("chargify_webhooks_parse_seconds_sum{event=\"payment_success\"} 0.002\n"));
+        assertTrue(text.contains("chargify_webhooks_dispatch_seconds_count{event=\"payment_success\"} 1\n"));
+        assertTrue(text.contains("chargify_webhooks_dispatch_seconds_sum{event=\"payment_success\"} 0.01\n"));
+        assertTrue(text.contains("chargify_webhooks_dispatch_seconds_count{event=\"signup_success\"} 0\n"));
+        assertTrue(text.contains("chargify_webhooks_parse_seconds{event=\"payment_success\",quantile=\"0.99\"} "));
+
+        // help and type are written once per metric, before its samples
+        assertEquals(text.indexOf("# HELP chargify_webhooks_parse_seconds "), text.lastIndexOf("# HELP chargify_webhooks_parse_seconds "));
+        assertTrue(text.indexOf("# TYPE chargify_webhooks_parse_seconds summary\n") < text.indexOf("chargify_webhooks_parse_seconds{"));
+        assertTrue(text.contains("# TYPE chargify_webhooks_received_total counter\n"));
+    }
+}
@@ -0,0 +1,47 @@
+package io.slingr.endpoints.chargify.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the settings of the connections read from the properties
+ */
+public class ConnectionSettingsTest {
+
+    @Test
+    public void testTimeouts() {
+        ConnectionSettings settings = ConnectionSettings.fromProperties(null, "", null, false);
+        assertEquals(ConnectionSettings.DEFAULT_CONNECT_TIMEOUT, settings.getConnectTimeout());
+        assertEquals(ConnectionSettings.DEFAULT_READ_TIMEOUT, settings.getReadTimeout());
+        assertTrue(settings.hasConnectTimeout());
+        assertTrue(settings.hasReadTimeout());
+
+        settings = ConnectionSettings.fromProperties(" 5000 ", "30000", null, false);
+        assertEquals(5000, settings.getConnectTimeout());
+        assertEquals(30000, settings.getReadTimeout());
+
+        // invalid values take the defaults
+        settings = ConnectionSettings.fromProperties("abc", "1.5", null, false);
+        assertEquals(ConnectionSettings.DEFAULT_CONNECT_TIMEOUT, settings.getConnectTimeout());
+        assertEquals(ConnectionSettings.DEFAULT_READ_TIMEOUT, settings.getReadTimeout());
+
+        // zero or negative values are not applied
+        settings = ConnectionSettings.fromProperties("0", "-1", null, false);
+        assertFalse(settings.hasConnectTimeout());
+        assertFalse(settings.hasReadTimeout());
+    }
+
+    @Test
+    public void testWarmUpConnections() {
+        // no connections are opened when the warm-up is disabled and they are not configured
+        assertEquals(0, ConnectionSettings.fromProperties(null, null, null, false).getWarmUpConnections());
+        assertEquals(0, ConnectionSettings.fromProperties(null, null, " ", false).getWarmUpConnections());
+        assertEquals(3, ConnectionSettings.fromProperties(null, null, "3", false).getWarmUpConnections());
+
+        assertEquals(ConnectionSettings.DEFAULT_WARM_UP_CONNECTIONS, ConnectionSettings.fromProperties(null, null, null, true).getWarmUpConnections());
+        assertEquals(0, ConnectionSettings.fromProperties(null, null, "0", true).getWarmUpConnections());
+        assertEquals(ConnectionSettings.MAX_WARM_UP_CONNECTIONS, ConnectionSettings.fromProperties(null, null, "50", true).getWarmUpConnections());
+        assertEquals(0, ConnectionSettings.fromProperties(null, null, "-2", true).getWarmUpConnections());
+    }
+}
@@ -0,0 +1,208 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.utils.Json;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the converters of the Convert class
+ */
+public class ConvertTest {
+
+    private Json chargifyCustomer() {
+        return chargifyCustomerFields()
+                .set("created_at", "2015-08-05 09:43:40 -0400")
+                .set("updated_at", "2015-08-05 09:43:40 -0400");
+    }
+
+    private Json chargifyCustomerFields() {
+        return Json.map()
+                .set("reference", "1130a0f2-3934-4352-9ed0-55d1a6f55119")
+                .set("id", "9498938")
+                .set("first_name", "First name")
+                .set("last_name", "Last name")
+                .set("email", "email@slingr.io")
+                .set("organization", "")
+                .set("city", "Springfield");
+    }
+
+    private Json slingrCustomer() {
+        return Json.map()
+                .set("id", "1130a0f2-3934-4352-9ed0-55d1a6f55119")
+                .set("chargifyId", "9498938")
+                .set("firstName", "First name")
+                .set("lastName", "Last name")
+                .set("email", "email@slingr.io")
+                .set("organization", "")
+                .set("shippingCity", "Springfield")
+                .set("createdAt", "2015-08-05 09:43:40 -0400")
+                .set("updatedAt", "2015-08-05 09:43:40 -0400")
+                .set("removed", false);
+    }
+
+    private Json chargifyCreditCard() {
+        return Json.map()
+                .set("id", "6471303")
+                .set("customer_id", "9498938")
+                .set("first_name", "First name")
+                .set("last_name", "Last name")
+                .set("card_type", "visa")
+                .set("expiration_month", "2")
+                .set("expiration_year", "2017")
+                .set("masked_card_number", "XXXX-XXXX-XXXX-1111")
+                .set("payment_type", "credit_card");
+    }
+
+    private Json slingrCreditCard() {
+        return Json.map()
+                .set("chargifyId", "6471303")
+                .set("customerId", "9498938")
+                .set("paymentType", "credit_card")
+                .set("firstName", "First name")
+                .set("lastName", "Last name")
+                .set("creditCardNumber", "XXXX-XXXX-XXXX-1111")
+                .set("creditCardType", "visa")
+                .set("expirationMonth", "2")
+                .set("expirationYear", "2017")
+                .set("removed", false)
+                .set("firstNameOnCard", "First name")
+                .set("lastNameOnCard", "Last name");
+    }
+
+    private Json chargifyProduct() {
+        return Json.map()
+                .set("id", "3721151")
+                .set("handle", "product-1")
+                .set("name", "Product 1")
+                .set("description", "")
+                .set("interval", "12")
+                .set("interval_unit", "month")
+                .set("version_number", "1")
+                .set("product_family", Json.map()
+                        .set("id", "505076")
+                        .set("handle", "family-1")
+                        .set("name", "Family 1"));
+    }
+
+    private Json slingrProduct() {
+        return Json.map()
+                .set("chargifyId", "3721151")
+                .set("handle", "product-1")
+                .set("name", "Product 1")
+                .set("description", "")
+                .set("family", Json.map()
+                        .set("handle", "family-1")
+                        .set("name", "Family 1"))
+                .set("intervalUnit", "month")
+                .set("interval", "12")
+                .set("versionNumber", "1")
+                .set("removed", false);
+    }
+
+    @Test
+    public void testCustomerConversion() {
+        assertEquals(slingrCustomer().toString(), Convert.customerToSlingr(chargifyCustomer()).toString());
+
+        assertEquals(chargifyCustomerFields().toString(), Convert.customerToChargify(slingrCustomer()).toString());
+
+        assertTrue(Convert.customerToSlingr(null).isEmpty());
+        assertTrue(Convert.customerToChargify(Json.map()).isEmpty());
+    }
+
+    @Test
+    public void testPaymentProfileConversion() {
+        assertEquals(slingrCreditCard().toString(), Convert.paymentProfileToSlingr(chargifyCreditCard()).toString());
+
+        final Json converted = Convert.paymentProfileToChargify(Json.map()
+                .set("customerId", "9498938")
+                .set("creditCardNumber", "4111111111111111")
+                .set("expirationMonth", "02")
+                .set("expirationYear", "2040")
+                .set("cvv", "123")
+                .set("code", "456"));
+        assertEquals(Json.map()
+                .set("customer_id", "9498938")
+                .set("full_number", "4111111111111111")
+                .set("expiration_month", "02")
+                .set("expiration_year", "2040")
+                .set("cvv", "456").toString(), converted.toString());
+    }
+
+    @Test
+    public void testSubscriptionConversion() {
+        final Json chargifySubscription = Json.map()
+                .set("id", "9780674")
+                .set("state", "active")
+                .set("previous_state", "active")
+                .set("customer", chargifyCustomer())
+                .set("credit_card", chargifyCreditCard())
+                .set("product", chargifyProduct())
+                .set("payment_type", "credit_card")
+                .set("created_at", "2015-08-05 09:43:43 -0400")
+                .set("cancel_at_end_of_period", "false")
+                .set("balance_in_cents", "10000")
+                .set("cancellation_message", "");
+
+        final Json expected = Json.map()
+                .set("chargifyId", "9780674")
+                .set("state", "active")
+                .set("previousState", "active")
+                .set("customer", slingrCustomer())
+                .set("customerId", "9498938")
+                .set("paymentProfile", slingrCreditCard())
+                .set("paymentProfileId", "6471303")
+                .set("product", slingrProduct())
+                .set("productHandle", "product-1")
+                .set("createdAt", "2015-08-05 09:43:43 -0400")
+                .set("cancellationMessage", "")
+                .set("cancelAtEndOfPeriod", "false")
+                .set("balanceInCents", "10000")
+                .set("canceled", false);
+        assertEquals(expected.toString(), Convert.subscriptionToSlingr(chargifySubscription).toString());
+
+        final Json converted = Convert.subscriptionToChargify(Json.map()
+                .set("id", "slingr-id")
+                .set("chargifyId", "9780674")
+                .set("customerId", "9498938")
+                .set("paymentProfileId", "6471303")
+                .set("productHandle", "product-1")
+                .set("cancellationMessage", "Canceled"));
+        assertEquals(Json.map()
+                .set("id", "9780674")
+                .set("customer_id", "9498938")
+                .set("payment_profile_id", "6471303")
+                .set("product_handle", "product-1")
+                .set("cancellation_message", "Canceled").toString(), converted.toString());
+    }
+
+    @Test
+    public void testPathSegment() {
+        assertEquals("basic-plan_1", Convert.toPathSegment("basic-plan_1"));
+        assertEquals("basic%20plan", Convert.toPathSegment("basic plan"));
+        assertEquals("a%2Fb%3Fc%23d%2Be", Convert.toPathSegment("a/b?c#d+e"));
+        assertEquals("caf%C3%A9", Convert.toPathSegment("café"));
+    }
+
+    @Test
+    public void testCanonicalString() {
+        final Json options = Json.map()
+                .set("path", "/invoices.json")
+                .set("params", Json.map().set("page", 1).set("direction", "asc"))
+                .set("settings", Json.map().set("fullResponse", true));
+        final Json reordered = Json.map()
+                .set("settings", Json.map().set("fullResponse", true))
+                .set("params", Json.map().set("direction", "asc").set("page", 1))
+                .set("path", "/invoices.json");
+        assertEquals(Convert.toCanonicalString(options), Convert.toCanonicalString(reordered));
+        assertEquals("{\"params\":{\"direction\":\"asc\",\"page\":1},\"path\":\"/invoices.json\",\"settings\":{\"fullResponse\":true}}",
+                Convert.toCanonicalString(options));
+
+        // any other option gives a different text
+        assertNotEquals(Convert.toCanonicalString(options), Convert.toCanonicalString(options.cloneJson().set("settings", Json.map())));
+        assertNotEquals(Convert.toCanonicalString(options), Convert.toCanonicalString(options.cloneJson().set("timeout", 1000)));
+        // strings are not mixed up with other values
+        assertNotEquals(Convert.toCanonicalString(Json.map().set("page", 1)), Convert.toCanonicalString(Json.map().set("page", "1")));
+        assertEquals("[1,\"a\\\"b\"]", Convert.toCanonicalString(Json.list().push(1).push("a\"b")));
+    }
+}
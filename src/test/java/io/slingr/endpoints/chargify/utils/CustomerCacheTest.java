@@ -0,0 +1,99 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.utils.Json;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the cache of converted customers
+ */
+public class CustomerCacheTest {
+
+    private long now = 0;
+
+    private CustomerCache cache() {
+        return new CustomerCache(new ExpiringCache<>(20, 60, TimeUnit.SECONDS, () -> now));
+    }
+
+    private static Json customer(String reference, int chargifyId, String email) {
+        return Json.map().set("id", reference).set("chargifyId", chargifyId).set("email", email);
+    }
+
+    @Test
+    public void testFindByBothKeys() {
+        final CustomerCache cache = cache();
+        cache.put(customer("ref-1", 1, "one@slingr.io"));
+        assertEquals("one@slingr.io", cache.findByReference("ref-1").string("email"));
+        assertEquals("one@slingr.io", cache.findByChargifyId(1).string("email"));
+        assertNull(cache.findByReference("ref-2"));
+        assertNull(cache.findByChargifyId(2));
+        assertNull(cache.findByReference(""));
+        assertNull(cache.findByChargifyId(0));
+
+        // expired customers are not returned
+        now += TimeUnit.SECONDS.toNanos(61);
+        assertNull(cache.findByReference("ref-1"));
+        assertNull(cache.findByChargifyId(1));
+    }
+
+    @Test
+    public void testEvictByAnyKey() {
+        final CustomerCache cache = cache();
+        cache.put(customer("ref-1", 1, "one@slingr.io"));
+        cache.put(customer("ref-2", 2, "two@slingr.io"));
+
+        // the other key is taken from the cached customer
+        cache.evict(null, "1");
+        assertNull(cache.findByReference("ref-1"));
+        assertNull(cache.findByChargifyId(1));
+
+        cache.evict("ref-2", null);
+        assertNull(cache.findByReference("ref-2"));
+        assertNull(cache.findByChargifyId(2));
+    }
+
+    @Test
+    public void testReadsOverlappingWithEvictions() {
+        final CustomerCache cache = cache();
+
+        // a read started before an update is not stored
+        final long version = cache.version();
+        cache.evict("ref-1", "1");
+        cache.put(customer("ref-1", 1, "old@slingr.io"), version);
+        assertNull(cache.findByReference("ref-1"));
+
+        // a read started after it is stored
+        cache.put(customer("ref-1", 1, "new@slingr.io"), cache.version());
+        assertEquals("new@slingr.io", cache.findByReference("ref-1").string("email"));
+
+        // updated customers are always stored
+        cache.put(customer("ref-1", 1, "updated@slingr.io"));
+        assertEquals("updated@slingr.io", cache.findByChargifyId(1).string("email"));
+    }
+
+    @Test
+    public void testCopies() {
+        final CustomerCache cache = cache();
+        final Json customer = customer("ref-1", 1, "one@slingr.io");
+        cache.put(customer);
+
+        // neither the stored nor the returned customers change the cached one
+        customer.set("email", "changed@slingr.io");
+        final Json found = cache.findByReference("ref-1");
+        assertEquals("one@slingr.io", found.string("email"));
+        found.set("email", "changed@slingr.io");
+        assertEquals("one@slingr.io", cache.findByChargifyId(1).string("email"));
+        assertNotSame(cache.findByReference("ref-1"), cache.findByReference("ref-1"));
+    }
+
+    @Test
+    public void testDisabled() {
+        final CustomerCache cache = new CustomerCache(0, 60);
+        cache.put(customer("ref-1", 1, "one@slingr.io"));
+        assertNull(cache.findByReference("ref-1"));
+        assertNull(cache.findByChargifyId(1));
+    }
+}
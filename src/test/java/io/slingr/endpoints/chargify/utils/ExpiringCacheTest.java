@@ -0,0 +1,78 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.utils.Json;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the in-memory cache with expiration
+ */
+public class ExpiringCacheTest {
+
+    private long now = 0;
+
+    @Test
+    public void testTtl() {
+        final ExpiringCache<String, String> cache = new ExpiringCache<>(10, 60, TimeUnit.SECONDS, () -> now);
+        cache.put("a", "1");
+        now += TimeUnit.SECONDS.toNanos(30);
+        cache.put("b", "2");
+        assertEquals("1", cache.get("a"));
+
+        now += TimeUnit.SECONDS.toNanos(31);
+        assertNull(cache.get("a"));
+        assertEquals("2", cache.get("b"));
+        assertEquals(1, cache.size());
+
+        final Json stats = cache.stats();
+        assertEquals(2L, (long) stats.longInteger("hits"));
+        assertEquals(1L, (long) stats.longInteger("misses"));
+        assertEquals(1L, (long) stats.longInteger("expirations"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsed() {
+        final ExpiringCache<String, String> cache = new ExpiringCache<>(2, 60, TimeUnit.SECONDS, () -> now);
+        cache.put("a", "1");
+        cache.put("b", "2");
+
+        // reading 'a' makes 'b' the least recently used entry
+        assertEquals("1", cache.get("a"));
+        cache.put("c", "3");
+        assertEquals(2, cache.size());
+        assertNull(cache.get("b"));
+        assertEquals("1", cache.get("a"));
+        assertEquals("3", cache.get("c"));
+        assertEquals(1L, (long) cache.stats().longInteger("evictions"));
+    }
+
+    @Test
+    public void testRemove() {
+        final ExpiringCache<String, String> cache = new ExpiringCache<>(10, 60, TimeUnit.SECONDS, () -> now);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        assertEquals("1", cache.remove("a"));
+        assertNull(cache.remove("a"));
+        assertNull(cache.get("a"));
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    public void testDisabled() {
+        final ExpiringCache<String, String> withoutSize = new ExpiringCache<>(0, 60, TimeUnit.SECONDS, () -> now);
+        assertFalse(withoutSize.isEnabled());
+        withoutSize.put("a", "1");
+        assertNull(withoutSize.get("a"));
+
+        final ExpiringCache<String, String> withoutTtl = new ExpiringCache<>(10, 0, TimeUnit.SECONDS, () -> now);
+        assertFalse(withoutTtl.isEnabled());
+        withoutTtl.put("a", "1");
+        assertNull(withoutTtl.get("a"));
+    }
+}
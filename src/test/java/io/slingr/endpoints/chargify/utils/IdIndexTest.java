@@ -0,0 +1,64 @@
+package io.slingr.endpoints.chargify.utils;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the index of ids of resources
+ */
+public class IdIndexTest {
+
+    @Test
+    public void testIds() {
+        final IdIndex index = new IdIndex();
+        index.add(1);
+        index.add(2);
+        index.add(2);
+        index.add(0);
+        index.add(-1);
+        assertEquals(2, index.size());
+        assertTrue(index.contains(1));
+        assertTrue(index.contains(2));
+        assertFalse(index.contains(0));
+
+        index.remove(1);
+        assertFalse(index.contains(1));
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void testComplete() {
+        final IdIndex index = new IdIndex();
+        index.add(10);
+        // any id may exist until the index is complete
+        assertTrue(index.mayExist(11));
+        index.markComplete();
+        assertTrue(index.mayExist(10));
+        assertFalse(index.mayExist(11));
+    }
+
+    @Test
+    public void testRandomIds() {
+        final IdIndex index = new IdIndex();
+        final Set<Integer> expected = new HashSet<>();
+        final Random random = new Random(7);
+        for (int i = 0; i < 200000; i++) {
+            final int id = 1 + random.nextInt(20000);
+            if (random.nextInt(4) == 0) {
+                index.remove(id);
+                expected.remove(id);
+            } else {
+                index.add(id);
+                expected.add(id);
+            }
+            final int probe = 1 + random.nextInt(20000);
+            assertEquals(expected.contains(probe), index.contains(probe));
+        }
+        assertEquals(expected.size(), index.size());
+    }
+}
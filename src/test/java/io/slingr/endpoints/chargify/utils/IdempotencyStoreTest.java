@@ -0,0 +1,183 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.services.datastores.DataStore;
+import io.slingr.endpoints.utils.Json;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the store of the results of the creations
+ */
+public class IdempotencyStoreTest {
+
+    private long now = 1000000;
+
+    /**
+     * Data store in memory supporting the filters used by the idempotency store
+     */
+    private static class MemoryDataStore implements DataStore {
+        private final Map<String, Json> documents = new LinkedHashMap<>();
+        private int nextId = 1;
+
+        @Override
+        public Json save(Json document) {
+            final String id = String.valueOf(nextId++);
+            documents.put(id, document.cloneJson().set("_id", id));
+            return documents.get(id);
+        }
+
+        @Override
+        public Json findById(String id) {
+            return documents.get(id);
+        }
+
+        @Override
+        public Json findOne(Json filter) {
+            final List<Json> found = find(filter);
+            return found.isEmpty() ? null : found.get(0);
+        }
+
+        @Override
+        public List<Json> find(Json filter) {
+            final List<Json> found = new ArrayList<>();
+            for (Json document : documents.values()) {
+                if (matches(document, filter)) {
+                    found.add(document);
+                }
+            }
+            return found;
+        }
+
+        @Override
+        public boolean removeById(String id) {
+            return documents.remove(id) != null;
+        }
+
+        @Override
+        public int remove(Json filter) {
+            final List<Json> found = find(filter);
+            for (Json document : found) {
+                documents.remove(document.string("_id"));
+            }
+            return found.size();
+        }
+
+        @Override
+        public int count(Json filter) {
+            return find(filter).size();
+        }
+
+        private static boolean matches(Json document, Json filter) {
+            for (String key : filter.keys()) {
+                final Json condition = filter.json(key);
+                if (condition != null) {
+                    if (document.longInteger(key) >= condition.longInteger("$lt")) {
+                        return false;
+                    }
+                } else if (!filter.string(key).equals(document.string(key))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private IdempotencyStore store(DataStore dataStore, long ttlSeconds) {
+        return new IdempotencyStore(dataStore, 10, ttlSeconds, () -> now);
+    }
+
+    @Test
+    public void testToken() {
+        final IdempotencyStore store = store(new MemoryDataStore(), 60);
+        final String token = store.token("customer", "key-1");
+        assertEquals(token, store.token("customer", "key-1"));
+        assertNotEquals(token, store.token("customer", "key-2"));
+        assertNotEquals(token, store.token("subscription", "key-1"));
+
+        // calls without key always get a new token
+        assertNotEquals(store.token("customer", null), store.token("customer", null));
+        assertNotEquals(store.token("customer", ""), store.token("customer", ""));
+
+        // keys are used even when the store is disabled
+        assertEquals(token, store(null, 0).token("customer", "key-1"));
+    }
+
+    @Test
+    public void testHitAndMiss() {
+        final MemoryDataStore dataStore = new MemoryDataStore();
+        final IdempotencyStore store = store(dataStore, 60);
+        assertNull(store.find("token-1"));
+
+        final Json result = Json.map().set("id", 1);
+        store.save("token-1", result);
+        assertEquals(result, store.find("token-1"));
+        assertNull(store.find("token-2"));
+
+        // stored results cannot be modified by callers
+        result.set("id", 2);
+        store.find("token-1").set("id", 3);
+        assertEquals(1, (int) store.find("token-1").integer("id"));
+
+        // results are read from the data store after a restart
+        assertEquals(1, dataStore.count(Json.map()));
+        assertEquals(1, (int) store(dataStore, 60).find("token-1").integer("id"));
+
+        final Json stats = store.stats();
+        assertEquals(3L, (long) stats.longInteger("hits"));
+        assertEquals(2L, (long) stats.longInteger("misses"));
+        assertEquals(1L, (long) stats.longInteger("saved"));
+    }
+
+    @Test
+    public void testExpiration() {
+        final MemoryDataStore dataStore = new MemoryDataStore();
+        final IdempotencyStore store = store(dataStore, 60);
+        store.save("token-1", Json.map().set("id", 1));
+
+        now += TimeUnit.SECONDS.toMillis(59);
+        assertNotNull(store.find("token-1"));
+
+        // expired results are removed when they are read
+        now += TimeUnit.SECONDS.toMillis(2);
+        assertNull(store.find("token-1"));
+        assertEquals(0, dataStore.count(Json.map()));
+        assertNull(store(dataStore, 60).find("token-1"));
+    }
+
+    @Test
+    public void testPurge() {
+        final MemoryDataStore dataStore = new MemoryDataStore();
+        final IdempotencyStore store = store(dataStore, 60);
+        store.save("token-1", Json.map().set("id", 1));
+        store.save("token-2", Json.map().set("id", 2));
+
+        // nothing is purged before the interval
+        now += TimeUnit.MINUTES.toMillis(30);
+        store.save("token-3", Json.map().set("id", 3));
+        assertEquals(3, dataStore.count(Json.map()));
+
+        // expired results are purged even if they are never read again
+        now += TimeUnit.MINUTES.toMillis(31);
+        store.save("token-4", Json.map().set("id", 4));
+        assertEquals(1, dataStore.count(Json.map()));
+        assertNotNull(dataStore.findOne(Json.map().set("token", "token-4")));
+        assertEquals(3L, (long) store.stats().longInteger("purged"));
+    }
+
+    @Test
+    public void testDisabled() {
+        final MemoryDataStore dataStore = new MemoryDataStore();
+        final IdempotencyStore store = store(dataStore, 0);
+        assertFalse(store.isEnabled());
+        store.save("token-1", Json.map().set("id", 1));
+        assertNull(store.find("token-1"));
+        assertEquals(0, dataStore.count(Json.map()));
+    }
+}
@@ -0,0 +1,33 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.utils.Json;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the masking of the logged resources
+ */
+public class LogPayloadTest {
+
+    @Test
+    public void testMaskedFields() {
+        final Json paymentProfile = Json.map()
+                .set("customer_id", 123)
+                .set("full_number", "4111111111111111")
+                .set("cvv", "123")
+                .set("bank_account", Json.map().set("bank_account_number", "000123456789"));
+
+        final String logged = LogPayload.masked(paymentProfile).toString();
+        assertTrue(logged.contains("\"customer_id\":123"));
+        assertTrue(logged.contains("\"full_number\":\"************1111\""));
+        assertTrue(logged.contains("\"cvv\":\"***\""));
+        assertTrue(logged.contains("\"bank_account_number\":\"********6789\""));
+        assertFalse(logged.contains("4111111111111111"));
+    }
+
+    @Test
+    public void testNullResource() {
+        assertEquals("null", LogPayload.masked(null).toString());
+    }
+}
@@ -0,0 +1,139 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.exceptions.EndpointException;
+import io.slingr.endpoints.exceptions.ErrorCode;
+import io.slingr.endpoints.utils.Json;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the reader of the pages of the list resources
+ */
+public class PagedReaderTest {
+
+    /**
+     * Pages of the given total of items, recording the requested pages
+     */
+    private PagedReader.PageFetcher fetcher(int total, List<Integer> requested) {
+        return (page, perPage) -> {
+            synchronized (requested) {
+                requested.add(page);
+            }
+            final List<Json> items = new ArrayList<>();
+            for (int id = (page - 1) * perPage + 1; id <= Math.min(total, page * perPage); id++) {
+                items.add(Json.map().set("id", id));
+            }
+            return items;
+        };
+    }
+
+    private List<String> read(int total, int perPage, int firstPage, List<Integer> requested) {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final List<String> pages = new ArrayList<>();
+            new PagedReader(executor, perPage, fetcher(total, requested))
+                    .read(firstPage, (page, items, last) -> pages.add(page + ":" + items.size() + (last ? ":last" : "")));
+            return pages;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testShortLastPage() {
+        final List<Integer> requested = new ArrayList<>();
+        final List<String> pages = read(25, 10, 1, requested);
+        assertEquals(3, pages.size());
+        assertEquals("1:10", pages.get(0));
+        assertEquals("2:10", pages.get(1));
+        assertEquals("3:5:last", pages.get(2));
+
+        // nothing is requested after the short page
+        assertEquals(3, requested.size());
+    }
+
+    @Test
+    public void testEmptyLastPage() {
+        final List<Integer> requested = new ArrayList<>();
+        final List<String> pages = read(20, 10, 1, requested);
+        assertEquals(3, pages.size());
+        assertEquals("2:10", pages.get(1));
+        assertEquals("3:0:last", pages.get(2));
+        assertEquals(3, requested.size());
+    }
+
+    @Test
+    public void testEmptyList() {
+        final List<Integer> requested = new ArrayList<>();
+        final List<String> pages = read(0, 10, 1, requested);
+        assertEquals(1, pages.size());
+        assertEquals("1:0:last", pages.get(0));
+        assertEquals(1, requested.size());
+    }
+
+    @Test
+    public void testFirstPage() {
+        final List<Integer> requested = new ArrayList<>();
+        final List<String> pages = read(25, 10, 2, requested);
+        assertEquals(2, pages.size());
+        assertEquals("2:10", pages.get(0));
+        assertEquals("3:5:last", pages.get(1));
+        assertEquals(2, (int) requested.get(0));
+
+        // pages lower than 1 start from the first one
+        assertEquals("1:10", read(25, 10, 0, new ArrayList<>()).get(0));
+    }
+
+    @Test
+    public void testPerPage() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals(PagedReader.DEFAULT_PER_PAGE, new PagedReader(executor, 0, (page, perPage) -> null).getPerPage());
+            assertEquals(PagedReader.MAX_PER_PAGE, new PagedReader(executor, 1000, (page, perPage) -> null).getPerPage());
+            assertEquals(20, new PagedReader(executor, 20, (page, perPage) -> null).getPerPage());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testErrors() {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final List<Integer> consumed = new ArrayList<>();
+            final PagedReader reader = new PagedReader(executor, 10, (page, perPage) -> {
+                if (page == 2) {
+                    throw EndpointException.permanent(ErrorCode.API, "HTTP 500 Internal Server Error");
+                }
+                return fetcher(100, new ArrayList<>()).fetch(page, perPage);
+            });
+            try {
+                reader.read(1, (page, items, last) -> consumed.add(page));
+                fail("The error of the page should be thrown");
+            } catch (EndpointException ex) {
+                assertEquals("HTTP 500 Internal Server Error", ex.getMessage());
+            }
+            assertEquals(1, consumed.size());
+
+            // other errors are converted
+            final PagedReader failing = new PagedReader(executor, 10, (page, perPage) -> {
+                throw new IllegalStateException("broken page");
+            });
+            try {
+                failing.read(1, (page, items, last) -> consumed.add(page));
+                fail("The error of the page should be thrown");
+            } catch (EndpointException ex) {
+                assertEquals(ErrorCode.API, ex.getCode());
+                assertTrue(ex.getMessage().contains("broken page"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.utils.Json;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the catalog of products kept in memory
+ */
+public class ProductCatalogTest {
+
+    private List<Json> products = new ArrayList<>();
+    private boolean failing = false;
+
+    private ProductCatalog catalog() {
+        return new ProductCatalog(() -> {
+            if (failing) {
+                throw new IllegalStateException("HTTP 500 Internal Server Error");
+            }
+            return products;
+        }, 300);
+    }
+
+    private static Json product(int id, String handle, String familyHandle) {
+        final Json product = Json.map().set("id", id).set("handle", handle).set("name", handle);
+        if (familyHandle != null) {
+            product.set("product_family", Json.map().set("id", id * 10).set("handle", familyHandle));
+        }
+        return product;
+    }
+
+    @Test
+    public void testNotLoaded() {
+        final ProductCatalog catalog = catalog();
+        assertFalse(catalog.stats().bool("loaded"));
+        assertNull(catalog.findByHandle("basic"));
+        assertNull(catalog.list(null));
+
+        // nothing can be rejected before the catalog is loaded
+        assertTrue(catalog.mayExist("basic"));
+    }
+
+    @Test
+    public void testLookups() {
+        products = Arrays.asList(product(1, "basic", "plans"), product(2, "pro", "plans"), product(3, "support", "addons"), product(4, "other", null));
+        final ProductCatalog catalog = catalog();
+        catalog.refresh();
+        assertTrue(catalog.stats().bool("loaded"));
+
+        assertEquals("basic", catalog.findByHandle("basic").string("handle"));
+        assertNull(catalog.findByHandle("missing"));
+        assertNull(catalog.findByHandle(null));
+        assertTrue(catalog.mayExist("pro"));
+        assertFalse(catalog.mayExist("missing"));
+
+        assertEquals(4, catalog.list(null).size());
+        assertEquals(4, catalog.list("").size());
+        final List<Json> plans = catalog.list("plans");
+        assertEquals(2, plans.size());
+        assertEquals("basic", plans.get(0).string("handle"));
+        assertEquals("pro", plans.get(1).string("handle"));
+        assertEquals(1, catalog.list("addons").size());
+        assertTrue(catalog.list("missing").isEmpty());
+
+        final Json stats = catalog.stats();
+        assertEquals(4, (int) stats.integer("products"));
+        assertEquals(2, (int) stats.integer("families"));
+    }
+
+    @Test
+    public void testLookupsReturnCopies() {
+        products = Arrays.asList(product(1, "basic", "plans"));
+        final ProductCatalog catalog = catalog();
+        catalog.refresh();
+
+        catalog.findByHandle("basic").set("name", "changed");
+        catalog.list(null).get(0).set("name", "changed");
+        catalog.list("plans").get(0).set("name", "changed");
+        catalog.list(null).clear();
+
+        assertEquals("basic", catalog.findByHandle("basic").string("name"));
+        assertEquals("basic", catalog.list(null).get(0).string("name"));
+        assertEquals("basic", catalog.list("plans").get(0).string("name"));
+    }
+
+    @Test
+    public void testRefresh() {
+        products = Arrays.asList(product(1, "basic", "plans"));
+        final ProductCatalog catalog = catalog();
+        catalog.refresh();
+        final List<Json> previous = catalog.list(null);
+
+        // the new snapshot replaces the previous one
+        products = Arrays.asList(product(2, "pro", "plans"), product(3, "enterprise", "plans"));
+        catalog.refresh();
+        assertNull(catalog.findByHandle("basic"));
+        assertNotNull(catalog.findByHandle("enterprise"));
+        assertEquals(2, catalog.list("plans").size());
+
+        // lists already returned are not modified
+        assertEquals(1, previous.size());
+        assertEquals("basic", previous.get(0).string("handle"));
+        assertEquals(2L, (long) catalog.stats().longInteger("refreshes"));
+    }
+
+    @Test
+    public void testFailedRefresh() {
+        products = Arrays.asList(product(1, "basic", "plans"));
+        final ProductCatalog catalog = catalog();
+        catalog.refresh();
+
+        // the previous snapshot is kept
+        failing = true;
+        catalog.refresh();
+        assertTrue(catalog.stats().bool("loaded"));
+        assertNotNull(catalog.findByHandle("basic"));
+        assertEquals(1, catalog.list("plans").size());
+
+        final Json stats = catalog.stats();
+        assertEquals(1L, (long) stats.longInteger("refreshes"));
+        assertEquals(1L, (long) stats.longInteger("failedRefreshes"));
+
+        // nothing is loaded when the first refresh fails
+        final ProductCatalog empty = catalog();
+        empty.refresh();
+        assertFalse(empty.stats().bool("loaded"));
+        assertTrue(empty.mayExist("basic"));
+    }
+}
@@ -0,0 +1,153 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.exceptions.EndpointException;
+import io.slingr.endpoints.exceptions.ErrorCode;
+import io.slingr.endpoints.utils.Json;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the scheduler of the requests sent to Chargify
+ */
+public class RequestSchedulerTest {
+
+    private long now = 0;
+    private final List<Long> sleeps = new ArrayList<>();
+
+    private RequestScheduler scheduler(double requestsPerSecond, int burst, int maxRetries) {
+        return new RequestScheduler(requestsPerSecond, burst, maxRetries, () -> now, nanos -> {
+            sleeps.add(TimeUnit.NANOSECONDS.toMillis(nanos));
+            now += nanos;
+        });
+    }
+
+    private static EndpointException tooManyRequests(String retryAfter) {
+        final Json info = Json.map();
+        if (retryAfter != null) {
+            info.set("headers", Json.map().set("Retry-After", retryAfter));
+        }
+        return EndpointException.permanent(ErrorCode.API, "HTTP 429 Too Many Requests", info).returnCode(429);
+    }
+
+    @Test
+    public void testTokenBucket() {
+        final RequestScheduler scheduler = scheduler(10, 2, 0);
+
+        // burst is sent right away
+        assertEquals("1", scheduler.execute(() -> "1"));
+        assertEquals("2", scheduler.execute(() -> "2"));
+        assertTrue(sleeps.isEmpty());
+
+        // next request waits for a new token
+        assertEquals("3", scheduler.execute(() -> "3"));
+        assertEquals(1, sleeps.size());
+        assertEquals(100L, (long) sleeps.get(0));
+
+        // tokens are refilled up to the burst
+        now += TimeUnit.SECONDS.toNanos(10);
+        scheduler.execute(() -> "4");
+        scheduler.execute(() -> "5");
+        assertEquals(1, sleeps.size());
+        scheduler.execute(() -> "6");
+        assertEquals(2, sleeps.size());
+
+        final Json stats = scheduler.stats();
+        assertEquals(6L, (long) stats.longInteger("requests"));
+        assertEquals(100L, (long) stats.longInteger("maxWaitMillis"));
+        assertEquals(0, (int) stats.integer("queueDepth"));
+    }
+
+    @Test
+    public void testRetryAfter() {
+        final RequestScheduler scheduler = scheduler(1000, 10, 3);
+        final AtomicInteger attempts = new AtomicInteger();
+        final String result = scheduler.execute(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw tooManyRequests("3");
+            }
+            return "ok";
+        });
+        assertEquals("ok", result);
+        assertEquals(2, attempts.get());
+
+        // delay of the header plus up to 25% of jitter
+        assertEquals(1, sleeps.size());
+        assertTrue(sleeps.get(0) >= 3000 && sleeps.get(0) <= 3750);
+
+        final Json stats = scheduler.stats();
+        assertEquals(1L, (long) stats.longInteger("throttled"));
+        assertEquals(1L, (long) stats.longInteger("retries"));
+    }
+
+    @Test
+    public void testExponentialBackoff() {
+        final RequestScheduler scheduler = scheduler(1000, 10, 5);
+        final AtomicInteger attempts = new AtomicInteger();
+        scheduler.execute(() -> {
+            if (attempts.incrementAndGet() <= 3) {
+                // invalid header is ignored
+                throw tooManyRequests(attempts.get() == 2 ? "soon" : null);
+            }
+            return "ok";
+        });
+        assertEquals(4, attempts.get());
+        assertEquals(3, sleeps.size());
+        assertTrue(sleeps.get(0) >= 1000 && sleeps.get(0) <= 1250);
+        assertTrue(sleeps.get(1) >= 2000 && sleeps.get(1) <= 2500);
+        assertTrue(sleeps.get(2) >= 4000 && sleeps.get(2) <= 5000);
+    }
+
+    @Test
+    public void testMaxRetries() {
+        final RequestScheduler scheduler = scheduler(1000, 10, 2);
+        final AtomicInteger attempts = new AtomicInteger();
+        try {
+            scheduler.execute(() -> {
+                attempts.incrementAndGet();
+                throw tooManyRequests(null);
+            });
+            fail("The rate limit error should be thrown after the retries");
+        } catch (EndpointException ex) {
+            assertEquals(429, ex.getReturnCode());
+        }
+        assertEquals(3, attempts.get());
+
+        final Json stats = scheduler.stats();
+        assertEquals(3L, (long) stats.longInteger("throttled"));
+        assertEquals(2L, (long) stats.longInteger("retries"));
+    }
+
+    @Test
+    public void testOtherErrors() {
+        final RequestScheduler scheduler = scheduler(1000, 10, 5);
+        final AtomicInteger attempts = new AtomicInteger();
+        try {
+            scheduler.execute(() -> {
+                attempts.incrementAndGet();
+                throw EndpointException.permanent(ErrorCode.API, "HTTP 500 Internal Server Error");
+            });
+            fail("The error should be thrown");
+        } catch (EndpointException ex) {
+            assertEquals("HTTP 500 Internal Server Error", ex.getMessage());
+        }
+        assertEquals(1, attempts.get());
+        assertTrue(sleeps.isEmpty());
+        assertEquals(0L, (long) scheduler.stats().longInteger("throttled"));
+    }
+
+    @Test
+    public void testInvalidRate() {
+        try {
+            scheduler(0, 1, 0);
+            fail("The rate should be validated");
+        } catch (IllegalArgumentException ex) {
+            assertTrue(ex.getMessage().contains("Invalid requests per second"));
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.utils.Json;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the cache of responses of the generic GET requests
+ */
+public class ResponseCacheTest {
+
+    @Test
+    public void testPrefixes() {
+        final ResponseCache cache = new ResponseCache("invoices=60, /statements=300,invoices/1=1,broken,other=x", 10);
+        assertTrue(cache.isEnabled());
+
+        final Json invoices = Json.map().set("invoices", Json.list());
+        cache.put("/invoices.json", "invoices.json", invoices);
+        assertEquals(invoices, cache.get("invoices.json", "invoices.json"));
+
+        final Json statement = Json.map().set("id", 1);
+        cache.put("statements/1.json", "statements/1.json", statement);
+        assertEquals(statement, cache.get("/statements/1.json", "statements/1.json"));
+
+        // paths without prefix are not cached
+        cache.put("customers.json", "customers.json", Json.map());
+        assertNull(cache.get("customers.json", "customers.json"));
+
+        // the longest prefix is used
+        cache.put("invoices/12.json", "invoices/12.json", Json.map());
+        final Json stats = cache.stats();
+        assertEquals(3, stats.keys().size());
+        assertEquals(1, (int) stats.json("invoices").integer("size"));
+        assertEquals(1, (int) stats.json("invoices/1").integer("size"));
+        assertEquals(1L, (long) stats.json("invoices/1").longInteger("ttlSeconds"));
+        assertEquals(300L, (long) stats.json("statements").longInteger("ttlSeconds"));
+    }
+
+    @Test
+    public void testCopies() {
+        final ResponseCache cache = new ResponseCache("invoices=60", 10);
+        final Json invoice = Json.map().set("id", 1);
+        cache.put("invoices/1.json", "invoices/1.json", invoice);
+
+        // neither the stored response nor the returned ones change the cached one
+        invoice.set("id", 2);
+        final Json cached = cache.get("invoices/1.json", "invoices/1.json");
+        assertNotSame(cached, cache.get("invoices/1.json", "invoices/1.json"));
+        cached.set("id", 3);
+        assertEquals(1, (int) cache.get("invoices/1.json", "invoices/1.json").integer("id"));
+    }
+
+    @Test
+    public void testDisabled() {
+        assertFalse(new ResponseCache("", 10).isEnabled());
+        assertFalse(new ResponseCache(null, 10).isEnabled());
+        assertFalse(new ResponseCache("invoices=60", 0).isEnabled());
+
+        final ResponseCache cache = new ResponseCache(null, 10);
+        cache.put("invoices.json", "invoices.json", Json.map());
+        assertNull(cache.get("invoices.json", "invoices.json"));
+    }
+
+    @Test
+    public void testKeysWithAllTheOptions() {
+        final ResponseCache cache = new ResponseCache("invoices=60", 10);
+        final Json options = Json.map().set("path", "invoices.json").set("params", Json.map().set("page", 1));
+        final Json fullResponse = options.cloneJson().set("settings", Json.map().set("fullResponse", true));
+        cache.put("invoices.json", Convert.toCanonicalString(options), Json.map().set("invoices", Json.list()));
+
+        // a request with other settings does not get the response of the first one
+        assertNull(cache.get("invoices.json", Convert.toCanonicalString(fullResponse)));
+        assertNotNull(cache.get("invoices.json", Convert.toCanonicalString(options)));
+    }
+}
@@ -0,0 +1,38 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.exceptions.EndpointException;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the generation of the Self-Service pages URLs
+ */
+public class SelfServiceUrlsTest {
+
+    @Test
+    public void testUrls() {
+        final SelfServiceUrls urls = new SelfServiceUrls("test", "secret", 10);
+        for (String chargifyId : new String[]{"1", "123", "9876543"}) {
+            final String token = DigestUtils.sha1Hex(String.format("update_payment--%s--%s", chargifyId, "secret")).substring(0, 10);
+            final String expected = String.format("https://test.chargify.com/update_payment/%s/%s", chargifyId, token);
+            assertEquals(expected, urls.url(SelfServiceUrls.UPDATE_PAYMENT, chargifyId));
+            // cached value
+            assertEquals(expected, urls.url(SelfServiceUrls.UPDATE_PAYMENT, chargifyId));
+        }
+        assertEquals("https://test.chargify.com/update_payment/123/09e228d278", urls.url("update_payment", "123"));
+    }
+
+    @Test
+    public void testPageTypes() {
+        assertEquals(SelfServiceUrls.UPDATE_PAYMENT, SelfServiceUrls.checkPageType(null));
+        assertEquals("other_page", SelfServiceUrls.checkPageType("other_page"));
+        try {
+            SelfServiceUrls.checkPageType("../update");
+            fail("Invalid page type");
+        } catch (EndpointException ex) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,142 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.utils.Json;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the coalescing of concurrent identical calls
+ */
+public class SingleFlightTest {
+
+    @Test
+    public void testConcurrentCallsAreCoalesced() throws Exception {
+        final SingleFlight<String> singleFlight = new SingleFlight<>();
+        final AtomicInteger executions = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<String>> results = new ArrayList<>();
+            results.add(executor.submit(() -> singleFlight.execute("customers/1", () -> {
+                executions.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "customer 1";
+            })));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> singleFlight.execute("customers/1", () -> {
+                    executions.incrementAndGet();
+                    return "other";
+                })));
+            }
+            while (singleFlight.stats().longInteger("coalesced") < 3) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("customer 1", result.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, executions.get());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // the key is released once the call finishes
+        assertEquals("again", singleFlight.execute("customers/1", () -> "again"));
+        assertEquals(0, (int) singleFlight.stats().integer("inFlight"));
+    }
+
+    @Test
+    public void testErrorsAreShared() throws Exception {
+        final SingleFlight<String> singleFlight = new SingleFlight<>();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<String> first = executor.submit(() -> singleFlight.execute("customers/2", () -> {
+                started.countDown();
+                await(release);
+                throw new IllegalStateException("not found");
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            final Thread releaser = new Thread(() -> {
+                while (singleFlight.stats().longInteger("coalesced") < 1) {
+                    Thread.yield();
+                }
+                release.countDown();
+            });
+            releaser.start();
+            try {
+                singleFlight.execute("customers/2", () -> "other");
+                fail("The error of the call in flight should be thrown");
+            } catch (IllegalStateException ex) {
+                assertEquals("not found", ex.getMessage());
+            }
+            try {
+                first.get(5, TimeUnit.SECONDS);
+                fail("The error should be thrown to the caller that executed the call");
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof IllegalStateException);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testResultsAreCopied() throws Exception {
+        final SingleFlight<Json> singleFlight = new SingleFlight<>(Json::cloneJson);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Json> first = executor.submit(() -> singleFlight.execute("customers/3", () -> {
+                started.countDown();
+                await(release);
+                return Json.map().set("id", 3);
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            final Thread releaser = new Thread(() -> {
+                while (singleFlight.stats().longInteger("coalesced") < 1) {
+                    Thread.yield();
+                }
+                release.countDown();
+            });
+            releaser.start();
+            final Json coalesced = singleFlight.execute("customers/3", () -> Json.map());
+            final Json executed = first.get(5, TimeUnit.SECONDS);
+            assertEquals(executed, coalesced);
+            assertNotSame(executed, coalesced);
+
+            // changes of a caller are not seen by the others
+            coalesced.set("id", 4);
+            assertEquals(3, (int) executed.integer("id"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
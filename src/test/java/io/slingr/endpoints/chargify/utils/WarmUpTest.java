@@ -0,0 +1,78 @@
+package io.slingr.endpoints.chargify.utils;
+
+import io.slingr.endpoints.utils.Json;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the phases executed when the endpoint starts
+ */
+public class WarmUpTest {
+
+    @Test
+    public void testPhasesRunInOrder() {
+        final List<String> executed = new ArrayList<>();
+        final WarmUp warmUp = new WarmUp()
+                .phase("converters", () -> executed.add("converters"))
+                .phase("stats", () -> executed.add("stats"))
+                .phase("connections", () -> executed.add("connections"));
+        assertFalse(warmUp.isReady());
+
+        warmUp.run();
+        assertEquals(Arrays.asList("converters", "stats", "connections"), executed);
+        assertTrue(warmUp.isReady());
+
+        final Json stats = warmUp.stats();
+        assertTrue(stats.bool("ready"));
+        assertTrue(stats.longInteger("totalMillis") >= 0);
+        assertEquals(new ArrayList<>(Arrays.asList("converters", "stats", "connections")), new ArrayList<>(stats.json("phasesMillis").keys()));
+    }
+
+    @Test
+    public void testFailedPhaseDoesNotStopTheWarmUp() {
+        final List<String> executed = new ArrayList<>();
+        final WarmUp warmUp = new WarmUp()
+                .phase("converters", () -> executed.add("converters"))
+                .phase("stats", () -> {
+                    throw new IllegalStateException("Chargify is not available");
+                })
+                .phase("connections", () -> executed.add("connections"));
+
+        warmUp.run();
+        assertEquals(Arrays.asList("converters", "connections"), executed);
+        assertTrue(warmUp.isReady());
+        assertTrue(warmUp.stats().json("phasesMillis").contains("stats"));
+    }
+
+    @Test
+    public void testInterruptedPhaseStopsTheWarmUp() {
+        final List<String> executed = new ArrayList<>();
+        final WarmUp warmUp = new WarmUp()
+                .phase("converters", () -> {
+                    throw new InterruptedException();
+                })
+                .phase("connections", () -> executed.add("connections"));
+
+        warmUp.run();
+        // clears the flag restored by the warm-up
+        assertTrue(Thread.interrupted());
+        assertTrue(executed.isEmpty());
+        assertFalse(warmUp.isReady());
+    }
+
+    @Test
+    public void testSkip() {
+        final List<String> executed = new ArrayList<>();
+        final WarmUp warmUp = new WarmUp().phase("converters", () -> executed.add("converters"));
+
+        warmUp.skip();
+        assertTrue(executed.isEmpty());
+        assertTrue(warmUp.isReady());
+        assertEquals(0L, (long) warmUp.stats().longInteger("totalMillis"));
+    }
+}
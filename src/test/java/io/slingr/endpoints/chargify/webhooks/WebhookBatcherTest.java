@@ -0,0 +1,125 @@
+package io.slingr.endpoints.chargify.webhooks;
+
+import io.slingr.endpoints.utils.Json;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the batches of webhook events
+ */
+public class WebhookBatcherTest {
+
+    @Test
+    public void testFullBatches() {
+        final List<List<Json>> batches = new CopyOnWriteArrayList<>();
+        final WebhookBatcher batcher = new WebhookBatcher(3, 60000, batches::add);
+        batcher.add(3, "webhook", Json.map().set("id", "3"));
+        batcher.add(1, "webhook", Json.map().set("id", "1"));
+        assertEquals(0, batches.size());
+        batcher.add(2, "customerUpdated", Json.map().set("id", "2"));
+        assertEquals(1, batches.size());
+
+        // events are sorted by webhook id
+        final List<Json> batch = batches.get(0);
+        assertEquals(3, batch.size());
+        assertEquals("1", batch.get(0).json("data").string("id"));
+        assertEquals("customerUpdated", batch.get(1).string("event"));
+        assertEquals("3", batch.get(2).json("data").string("id"));
+
+        // pending events are sent when it stops
+        batcher.add(4, "webhook", Json.map().set("id", "4"));
+        batcher.stop();
+        assertEquals(2, batches.size());
+        assertEquals(1, batches.get(1).size());
+    }
+
+    @Test
+    public void testExpiredBatches() throws Exception {
+        final List<List<Json>> batches = new CopyOnWriteArrayList<>();
+        final WebhookBatcher batcher = new WebhookBatcher(100, 50, batches::add);
+        batcher.add(1, "webhook", Json.map().set("id", "1"));
+        for (int i = 0; i < 100 && batches.isEmpty(); i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, batches.size());
+        batcher.stop();
+    }
+
+    @Test
+    public void testFailedBatchIsRetried() throws Exception {
+        final List<List<Json>> batches = new CopyOnWriteArrayList<>();
+        final List<Long> lost = new CopyOnWriteArrayList<>();
+        final AtomicInteger failures = new AtomicInteger(2);
+        final WebhookBatcher batcher = new WebhookBatcher(2, 60000, 20, batch -> {
+            if (failures.getAndDecrement() > 0) {
+                throw new IllegalStateException("app is not available");
+            }
+            batches.add(batch);
+        }, lost::add);
+
+        // the error is not thrown to the thread that filled the batch
+        batcher.add(1, "webhook", Json.map().set("id", "1"));
+        batcher.add(2, "webhook", Json.map().set("id", "2"));
+        assertEquals(0, batches.size());
+        assertEquals(1, (int) batcher.stats().integer("waitingBatches"));
+
+        // batches closed in the meantime are sent after the failed one
+        batcher.add(3, "webhook", Json.map().set("id", "3"));
+        batcher.add(4, "webhook", Json.map().set("id", "4"));
+        for (int i = 0; i < 200 && batches.size() < 2; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(2, batches.size());
+        assertEquals("1", batches.get(0).get(0).json("data").string("id"));
+        assertEquals("3", batches.get(1).get(0).json("data").string("id"));
+        assertTrue(lost.isEmpty());
+
+        final Json stats = batcher.stats();
+        assertEquals(2L, (long) stats.longInteger("retries"));
+        assertEquals(0, (int) stats.integer("waitingBatches"));
+        assertEquals(0L, (long) stats.longInteger("lostBatches"));
+        batcher.stop();
+    }
+
+    @Test
+    public void testFailingBatchIsLost() throws Exception {
+        final List<Long> lost = new CopyOnWriteArrayList<>();
+        final AtomicInteger attempts = new AtomicInteger();
+        final WebhookBatcher batcher = new WebhookBatcher(2, 60000, 5, batch -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("app is not available");
+        }, lost::add);
+
+        batcher.add(7, "webhook", Json.map().set("id", "7"));
+        batcher.add(5, "webhook", Json.map().set("id", "5"));
+        for (int i = 0; i < 200 && lost.size() < 2; i++) {
+            Thread.sleep(10);
+        }
+
+        // ids of the dropped webhooks are given to the listener, so they can be received again
+        assertEquals(5, attempts.get());
+        assertEquals(2, lost.size());
+        assertTrue(lost.contains(5L));
+        assertTrue(lost.contains(7L));
+        assertEquals(1L, (long) batcher.stats().longInteger("lostBatches"));
+        assertEquals(2L, (long) batcher.stats().longInteger("lostEvents"));
+        batcher.stop();
+    }
+
+    @Test
+    public void testStopDropsFailingBatches() {
+        final List<Long> lost = new CopyOnWriteArrayList<>();
+        final WebhookBatcher batcher = new WebhookBatcher(10, 60000, 60000, batch -> {
+            throw new IllegalStateException("app is not available");
+        }, lost::add);
+        batcher.add(1, "webhook", Json.map().set("id", "1"));
+        batcher.stop();
+        assertEquals(1, lost.size());
+        assertEquals(1L, (long) lost.get(0));
+    }
+}
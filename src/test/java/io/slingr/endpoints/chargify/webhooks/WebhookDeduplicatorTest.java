@@ -0,0 +1,92 @@
+package io.slingr.endpoints.chargify.webhooks;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the deduplication of the webhooks
+ */
+public class WebhookDeduplicatorTest {
+
+    private long now = 0;
+
+    @Test
+    public void testDuplicates() {
+        final WebhookDeduplicator deduplicator = new WebhookDeduplicator(10, 60, TimeUnit.SECONDS, () -> now);
+        assertFalse(deduplicator.isDuplicate(46125396));
+        assertFalse(deduplicator.isDuplicate(46125345));
+        assertTrue(deduplicator.isDuplicate(46125396));
+        assertTrue(deduplicator.isDuplicate(46125345));
+
+        // invalid ids are never duplicated
+        assertFalse(deduplicator.isDuplicate(0));
+        assertFalse(deduplicator.isDuplicate(0));
+        assertFalse(deduplicator.isDuplicate(-1));
+        assertEquals(2, deduplicator.size());
+    }
+
+    @Test
+    public void testWindow() {
+        final WebhookDeduplicator deduplicator = new WebhookDeduplicator(10, 60, TimeUnit.SECONDS, () -> now);
+        assertFalse(deduplicator.isDuplicate(1));
+        now += TimeUnit.SECONDS.toNanos(30);
+        assertFalse(deduplicator.isDuplicate(2));
+        now += TimeUnit.SECONDS.toNanos(31);
+
+        // first id is out of the window
+        assertFalse(deduplicator.isDuplicate(1));
+        assertTrue(deduplicator.isDuplicate(2));
+    }
+
+    @Test
+    public void testCapacity() {
+        final WebhookDeduplicator deduplicator = new WebhookDeduplicator(3, 60, TimeUnit.SECONDS, () -> now);
+        for (long id = 1; id <= 4; id++) {
+            assertFalse(deduplicator.isDuplicate(id));
+        }
+        assertEquals(3, deduplicator.size());
+
+        // oldest id was dropped
+        assertFalse(deduplicator.isDuplicate(1));
+        assertTrue(deduplicator.isDuplicate(4));
+    }
+
+    @Test
+    public void testForget() {
+        final WebhookDeduplicator deduplicator = new WebhookDeduplicator(3, 60, TimeUnit.SECONDS, () -> now);
+        assertFalse(deduplicator.isDuplicate(1));
+        assertFalse(deduplicator.isDuplicate(2));
+        deduplicator.forget(2);
+        assertFalse(deduplicator.isDuplicate(2));
+        assertTrue(deduplicator.isDuplicate(2));
+        assertTrue(deduplicator.isDuplicate(1));
+    }
+
+    @Test
+    public void testRandomIds() {
+        final int capacity = 100;
+        final WebhookDeduplicator deduplicator = new WebhookDeduplicator(capacity, 1, TimeUnit.HOURS, () -> now);
+        final ArrayDeque<Long> order = new ArrayDeque<>();
+        final Set<Long> expected = new HashSet<>();
+        final Random random = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            final long id = 1 + random.nextInt(500);
+            final boolean duplicated = expected.contains(id);
+            assertEquals(duplicated, deduplicator.isDuplicate(id));
+            if (!duplicated) {
+                if (order.size() == capacity) {
+                    expected.remove(order.removeFirst());
+                }
+                order.addLast(id);
+                expected.add(id);
+            }
+        }
+    }
+}
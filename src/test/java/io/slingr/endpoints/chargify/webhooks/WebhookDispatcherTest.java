@@ -0,0 +1,161 @@
+package io.slingr.endpoints.chargify.webhooks;
+
+import io.slingr.endpoints.utils.Json;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the queues of received webhooks
+ */
+public class WebhookDispatcherTest {
+
+    private final List<String> processed = Collections.synchronizedList(new ArrayList<>());
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    @Test
+    public void testSubmit() {
+        final WebhookDispatcher dispatcher = new WebhookDispatcher(10, 2, WebhookDispatcher.Backpressure.REJECT, 0, processed::add);
+        assertTrue(dispatcher.submit("1", "a"));
+        assertTrue(dispatcher.submit(null, "b"));
+        dispatcher.stop(5000);
+        assertEquals(2, processed.size());
+        assertTrue(processed.contains("a"));
+        assertTrue(processed.contains("b"));
+
+        final Json stats = dispatcher.stats();
+        assertEquals(2L, (long) stats.longInteger("accepted"));
+        assertEquals(2L, (long) stats.longInteger("dispatched"));
+        assertEquals(0L, (long) stats.longInteger("dropped"));
+
+        // nothing is accepted once stopped
+        assertFalse(dispatcher.submit("1", "c"));
+        assertEquals(1L, (long) dispatcher.stats().longInteger("rejected"));
+    }
+
+    @Test
+    public void testLaneOrder() {
+        final WebhookDispatcher dispatcher = new WebhookDispatcher(400, 4, WebhookDispatcher.Backpressure.REJECT, 0, processed::add);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(dispatcher.submit("subscription", String.valueOf(i)));
+        }
+        dispatcher.stop(5000);
+        assertEquals(50, processed.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(String.valueOf(i), processed.get(i));
+        }
+
+        // the same key always goes to the same lane
+        assertEquals(dispatcher.laneIndex("subscription"), dispatcher.laneIndex("subscription"));
+    }
+
+    @Test
+    public void testReject() {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final WebhookDispatcher dispatcher = new WebhookDispatcher(1, 1, WebhookDispatcher.Backpressure.REJECT, 0, body -> {
+            started.countDown();
+            await(release);
+            processed.add(body);
+        });
+        assertTrue(dispatcher.submit(null, "a"));
+        await(started);
+        assertTrue(dispatcher.submit(null, "b"));
+        assertFalse(dispatcher.submit(null, "c"));
+        assertEquals(1, dispatcher.queueDepth());
+        release.countDown();
+        dispatcher.stop(5000);
+        assertEquals(2, processed.size());
+        assertEquals(1L, (long) dispatcher.stats().longInteger("rejected"));
+    }
+
+    @Test
+    public void testBlock() {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final WebhookDispatcher dispatcher = new WebhookDispatcher(1, 1, WebhookDispatcher.Backpressure.BLOCK, 100, body -> {
+            started.countDown();
+            await(release);
+            processed.add(body);
+        });
+        assertTrue(dispatcher.submit(null, "a"));
+        await(started);
+        assertTrue(dispatcher.submit(null, "b"));
+
+        // no room during the timeout
+        final long start = System.nanoTime();
+        assertFalse(dispatcher.submit(null, "c"));
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 90);
+
+        // room is released while waiting
+        new Thread(() -> {
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException ex) {
+                // nothing to do
+            }
+            release.countDown();
+        }).start();
+        assertTrue(dispatcher.submit(null, "d"));
+        dispatcher.stop(5000);
+        assertEquals(3, processed.size());
+    }
+
+    @Test
+    public void testStopTimeout() {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final WebhookDispatcher dispatcher = new WebhookDispatcher(10, 1, WebhookDispatcher.Backpressure.REJECT, 0, body -> {
+            started.countDown();
+            await(release);
+            processed.add(body);
+        });
+        assertTrue(dispatcher.submit(null, "a"));
+        await(started);
+        assertTrue(dispatcher.submit(null, "b"));
+        assertTrue(dispatcher.submit(null, "c"));
+
+        // the lane is still busy when the timeout is reached
+        dispatcher.stop(100);
+        release.countDown();
+        final Json stats = dispatcher.stats();
+        assertEquals(2L, (long) stats.longInteger("dropped"));
+        assertEquals(0, (int) stats.integer("queueDepth"));
+        assertFalse(processed.contains("b"));
+        assertFalse(processed.contains("c"));
+    }
+
+    @Test
+    public void testRetries() {
+        final AtomicInteger attempts = new AtomicInteger();
+        final WebhookDispatcher dispatcher = new WebhookDispatcher(10, 1, WebhookDispatcher.Backpressure.REJECT, 0, body -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new IllegalStateException("temporary error");
+            }
+            processed.add(body);
+        });
+        assertTrue(dispatcher.submit(null, "a"));
+        dispatcher.stop(5000);
+        assertEquals(2, attempts.get());
+        assertEquals(1, processed.size());
+
+        final Json stats = dispatcher.stats();
+        assertEquals(1L, (long) stats.longInteger("retried"));
+        assertEquals(1L, (long) stats.longInteger("dispatched"));
+        assertEquals(0L, (long) stats.longInteger("failed"));
+    }
+}
@@ -0,0 +1,49 @@
+package io.slingr.endpoints.chargify.webhooks;
+
+import io.slingr.endpoints.utils.FilesUtils;
+import io.slingr.endpoints.utils.Json;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the typed events generated for the webhooks
+ */
+public class WebhookEventsTest {
+
+    private Json webhook(String filename) {
+        return WebhookParser.parse(FilesUtils.readInternalFile(String.format("webhooks/%s", filename)).trim());
+    }
+
+    @Test
+    public void testEventNames() {
+        assertEquals("subscriptionSignedUp", WebhookEvents.eventName("signup_success"));
+        assertEquals("customerUpdated", WebhookEvents.eventName("customer_update"));
+        assertNull(WebhookEvents.eventName("unknown_event"));
+        assertNull(WebhookEvents.eventName(null));
+    }
+
+    @Test
+    public void testSignupSuccess() {
+        final Json event = WebhookEvents.toSlingr(webhook("signup_success"));
+        assertEquals("46125396", event.string("webhookId"));
+        assertEquals("signup_success", event.string("event"));
+
+        final Json subscription = event.json("subscription");
+        assertEquals("9780674", subscription.string("chargifyId"));
+        assertEquals("active", subscription.string("state"));
+        assertEquals("product-1", subscription.string("productHandle"));
+
+        // other resources of the payload are kept as they are
+        assertEquals("29472", event.json("payload").json("site").string("id"));
+    }
+
+    @Test
+    public void testCustomerUpdate() {
+        final Json event = WebhookEvents.toSlingr(webhook("customer_update"));
+        final Json customer = event.json("customer");
+        assertEquals("9498920", customer.string("chargifyId"));
+        assertEquals("Test", customer.string("lastName"));
+        assertEquals("US", customer.string("shippingCountry"));
+    }
+}
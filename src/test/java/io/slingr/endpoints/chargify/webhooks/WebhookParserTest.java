@@ -0,0 +1,103 @@
+package io.slingr.endpoints.chargify.webhooks;
+
+import io.slingr.endpoints.utils.FilesUtils;
+import io.slingr.endpoints.utils.Json;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the parser of the webhooks sent by Chargify
+ */
+public class WebhookParserTest {
+
+    private String webhook(String filename) {
+        return FilesUtils.readInternalFile(String.format("webhooks/%s", filename)).trim();
+    }
+
+    @Test
+    public void testSignupSuccess() {
+        final Json webhook = WebhookParser.parse(webhook("signup_success"));
+        assertEquals("46125396", webhook.string("id"));
+        assertEquals("signup_success", webhook.string("event"));
+
+        final Json subscription = webhook.json("payload").json("subscription");
+        assertEquals("9780674", subscription.string("id"));
+        assertEquals("active", subscription.string("state"));
+        assertEquals("", subscription.string("canceled_at"));
+        assertEquals("2015-08-05 09:43:43 -0400", subscription.string("activated_at"));
+        assertEquals("9498938", subscription.json("customer").string("id"));
+        assertEquals("email@slingr.io", subscription.json("customer").string("email"));
+        assertEquals("6471303", subscription.json("credit_card").string("id"));
+        assertEquals("product-1", subscription.json("product").string("handle"));
+        assertEquals("family-1", subscription.json("product").json("product_family").string("handle"));
+        assertEquals("29472", webhook.json("payload").json("site").string("id"));
+    }
+
+    @Test
+    public void testCustomerUpdate() {
+        final Json webhook = WebhookParser.parse(webhook("customer_update"));
+        assertEquals("customer_update", webhook.string("event"));
+
+        final Json customer = webhook.json("payload").json("customer");
+        assertEquals("9498920", customer.string("id"));
+        assertEquals("Test", customer.string("last_name"));
+        assertEquals("US", customer.string("country"));
+        assertEquals("CT", customer.string("state"));
+    }
+
+    @Test
+    public void testPercentEncoding() {
+        final Json webhook = WebhookParser.parse("id=1&event=customer_update" +
+                "&payload%5Bcustomer%5D%5Bfirst_name%5D=Jos%C3%A9+Mar%C3%ADa" +
+                "&payload%5Bcustomer%5D%5Bemail%5D=email%2B2%40slingr.io" +
+                "&payload[customer][organization]=100%" +
+                "&payload[site][id]=29472");
+        final Json customer = webhook.json("payload").json("customer");
+        assertEquals("Jos\u00e9 Mar\u00eda", customer.string("first_name"));
+        assertEquals("email+2@slingr.io", customer.string("email"));
+        assertEquals("100%", customer.string("organization"));
+        assertEquals("29472", webhook.json("payload").json("site").string("id"));
+    }
+
+    @Test
+    public void testTopLevelValues() {
+        final String body = webhook("subscription_state_change");
+        assertEquals("46125345", WebhookParser.value(body, "id"));
+        assertEquals("subscription_state_change", WebhookParser.value(body, "event"));
+        assertNull(WebhookParser.value(body, "payload"));
+        assertNull(WebhookParser.value("", "id"));
+    }
+
+    @Test
+    public void testNestedValues() {
+        assertEquals("9780655", WebhookParser.value(webhook("subscription_state_change"), "payload[subscription][id]"));
+        assertEquals("9498920", WebhookParser.value(webhook("customer_update"), "payload[customer][id]"));
+        assertNull(WebhookParser.value(webhook("customer_update"), "payload[subscription][id]"));
+
+        final String encoded = "id=1&payload%5Bsubscription%5D%5Bid%5D=9780655&payload%5Bsubscription%5D%5Bid_x%5D=2";
+        assertEquals("9780655", WebhookParser.value(encoded, "payload[subscription][id]"));
+        assertEquals("1", WebhookParser.value(encoded, "id"));
+    }
+
+    @Test
+    public void testLists() {
+        final Json webhook = WebhookParser.parse("id=1&payload[tags][]=a&payload[tags][]=b"
+                + "&payload[items][][id]=1&payload[items][][name]=first&payload[items][][id]=2&payload[other]=x");
+        assertEquals("1", webhook.string("id"));
+        final Json payload = webhook.json("payload");
+        assertEquals(2, payload.strings("tags").size());
+        assertEquals("a", payload.strings("tags").get(0));
+        assertEquals("b", payload.strings("tags").get(1));
+
+        // values of an array field do not overwrite the previous ones
+        final List<Json> items = payload.jsons("items");
+        assertEquals(2, items.size());
+        assertEquals("1", items.get(0).string("id"));
+        assertEquals("first", items.get(0).string("name"));
+        assertEquals("2", items.get(1).string("id"));
+        assertEquals("x", payload.string("other"));
+    }
+}
@@ -0,0 +1,60 @@
+package io.slingr.endpoints.chargify.webhooks;
+
+import org.junit.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * <p>Test over the verification of the signatures of the webhooks
+ */
+public class WebhookSignatureTest {
+
+    private static final String KEY = "LmvJ4q0ZbJnCzi3sVtBaUf600RE4wgNcaBjb74ibTs";
+
+    private String sign(String key, String body) throws Exception {
+        final Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        final StringBuilder hex = new StringBuilder();
+        for (byte b : mac.doFinal(body.getBytes(StandardCharsets.UTF_8))) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private String body(int size) {
+        final StringBuilder body = new StringBuilder("id=46125396&event=signup_success");
+        while (body.length() < size) {
+            body.append("&payload[subscription][customer][first_name]=Jos\u00e9 \u4e2d\ud83d\ude00");
+        }
+        return body.toString();
+    }
+
+    @Test
+    public void testValidSignatures() throws Exception {
+        final WebhookSignature signature = new WebhookSignature(KEY);
+        for (String body : new String[]{"", "id=1&event=test", body(100), body(10000)}) {
+            final String hex = sign(KEY, body);
+            assertTrue(signature.verify(body, hex));
+            assertTrue(signature.verify(body, hex.toUpperCase()));
+        }
+    }
+
+    @Test
+    public void testInvalidSignatures() throws Exception {
+        final WebhookSignature signature = new WebhookSignature(KEY);
+        final String body = body(10000);
+        final String hex = sign(KEY, body);
+
+        assertFalse(signature.verify(body + "&", hex));
+        assertFalse(signature.verify(body, sign("another key", body)));
+        assertFalse(signature.verify(body, hex.substring(1)));
+        assertFalse(signature.verify(body, hex.replace(hex.charAt(0), 'z')));
+        assertFalse(signature.verify(body, ""));
+        assertFalse(signature.verify(body, null));
+        assertFalse(signature.verify(null, hex));
+    }
+}